@@ -0,0 +1,50 @@
+package com.music.musicapp.config;
+
+import com.music.musicapp.service.AudioStreamingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+// Response bodies (StreamingResponseBody) are written on virtual threads, one per response,
+// so thousands of slow listeners park cheaply instead of holding Tomcat worker threads.
+// A stalled write is cut off by Tomcat's write timeout (server.tomcat.connection-timeout).
+@Configuration
+public class StreamingConfig implements WebMvcConfigurer {
+    
+    // Async timeout for every other Callable/DeferredResult handler in the app
+    @Value("${web.async.default-timeout-seconds:60}")
+    private long defaultTimeoutSeconds;
+    
+    // Upper bound on one audio response, so paced streams of very long files still finish
+    @Value("${stream.async.max-duration-minutes:240}")
+    private long maxDurationMinutes;
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-");
+        executor.setVirtualThreads(true);
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(TimeUnit.SECONDS.toMillis(defaultTimeoutSeconds));
+        
+        // Runs before async processing starts, so the timeout still applies to this request
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(AudioStreamingService.STREAMING_REQUEST_ATTRIBUTE,
+                            RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(TimeUnit.MINUTES.toMillis(maxDurationMinutes));
+                }
+            }
+        });
+    }
+}
@@ -6,6 +6,8 @@ import com.music.musicapp.model.User;
 import com.music.musicapp.repository.UserRepository;
 import com.music.musicapp.repository.SongRepository;
 import com.music.musicapp.repository.PlaylistRepository;
+import com.music.musicapp.service.AudioMetadataService;
+import com.music.musicapp.service.BandwidthShaper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -28,6 +30,12 @@ public class AdminController {
     @Autowired
     private PlaylistRepository playlistRepository;
 
+    @Autowired
+    private AudioMetadataService audioMetadataService;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
     @GetMapping("/stats")
     public ResponseEntity<ApiResponse> getAdminStats() {
         Map<String, Object> stats = new HashMap<>();
@@ -45,6 +53,18 @@ public class AdminController {
         List<Song> popularSongs = songRepository.findTop10ByOrderByPlayCountDesc();
         stats.put("popularSongs", popularSongs);
         
+        // Audio egress: active streams and bytes held back by the shaper
+        stats.put("streaming", bandwidthShaper.getStats());
+        
         return ResponseEntity.ok(ApiResponse.success("Admin stats", stats));
     }
+
+    // Queue metadata extraction for songs uploaded before the pipeline existed
+    @PostMapping("/metadata/backfill")
+    public ResponseEntity<ApiResponse> backfillMetadata() {
+        int queued = audioMetadataService.backfill();
+        Map<String, Object> result = new HashMap<>(audioMetadataService.getStats());
+        result.put("queued", queued);
+        return ResponseEntity.ok(ApiResponse.success("Metadata backfill queued", result));
+    }
 }
\ No newline at end of file
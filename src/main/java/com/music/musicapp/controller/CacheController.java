@@ -1,11 +1,20 @@
 package com.music.musicapp.controller;
 
 import com.music.musicapp.dto.ApiResponse;
+import com.music.musicapp.service.AudioStreamingService;
+import com.music.musicapp.service.CacheNamespace;
 import com.music.musicapp.service.CacheService;
+import com.music.musicapp.service.NamedCacheManager;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +26,12 @@ public class CacheController {
     @Autowired
     private CacheService cacheService;
     
+    @Autowired
+    private NamedCacheManager namedCacheManager;
+    
+    @Autowired
+    private AudioStreamingService audioStreamingService;
+    
     // Save track for offline
     @PostMapping("/offline/save")
     public ResponseEntity<ApiResponse> saveForOffline(
@@ -28,12 +43,19 @@ public class CacheController {
                     .body(ApiResponse.error("Track ID is required"));
             }
             
-            // Fixed: saveObjectToCache now returns boolean
-            boolean success = cacheService.saveObjectToCache("offline_" + trackId, trackData, 2592000);
+            boolean success = cacheService.saveForOffline(trackId, trackData);
             
             if (success) {
+                // Fetch the audio itself in the background; progress is at /offline/progress/{trackId}
+                Map<String, Object> result = new HashMap<>();
+                result.put("trackId", trackId);
+                String audioUrl = findAudioUrl(trackData);
+                if (audioUrl != null) {
+                    cacheService.downloadAndCacheAudio(trackId, audioUrl);
+                    result.put("download", cacheService.getDownloadProgress(trackId));
+                }
                 return ResponseEntity.ok(
-                    ApiResponse.success("Track saved for offline", Map.of("trackId", trackId))
+                    ApiResponse.success("Track saved for offline", result)
                 );
             } else {
                 return ResponseEntity.badRequest()
@@ -45,11 +67,14 @@ public class CacheController {
         }
     }
     
-    // Get offline tracks
+    // Get offline tracks, optionally a page at a time (pass the last ID of a page as "after" for the next)
     @GetMapping("/offline/tracks")
-    public ResponseEntity<ApiResponse> getOfflineTracks() {
+    public ResponseEntity<ApiResponse> getOfflineTracks(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<String> offlineKeys = cacheService.getOfflineKeys();
+            List<String> offlineKeys = cacheService.getOfflineKeys(after,
+                limit != null ? Math.max(1, Math.min(limit, 1000)) : Integer.MAX_VALUE);
             return ResponseEntity.ok(
                 ApiResponse.success("Offline tracks", offlineKeys)
             );
@@ -66,7 +91,8 @@ public class CacheController {
             String audioPath = cacheService.getOfflineAudioPath(trackId);
             if (audioPath != null) {
                 return ResponseEntity.ok(
-                    ApiResponse.success("Offline audio URL", Map.of("path", audioPath))
+                    ApiResponse.success("Offline audio URL",
+                        Map.of("path", audioPath, "url", "/api/cache/offline/file/" + trackId))
                 );
             } else {
                 return ResponseEntity.badRequest()
@@ -78,11 +104,38 @@ public class CacheController {
         }
     }
     
+    // Download progress of a track saved for offline
+    @GetMapping("/offline/progress/{trackId}")
+    public ResponseEntity<ApiResponse> getDownloadProgress(@PathVariable String trackId) {
+        try {
+            return ResponseEntity.ok(
+                ApiResponse.success("Download progress", cacheService.getDownloadProgress(trackId))
+            );
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Error getting download progress: " + e.getMessage()));
+        }
+    }
+    
+    // Play a downloaded track (range requests supported)
+    @GetMapping("/offline/file/{trackId}")
+    public StreamingResponseBody getOfflineFile(@PathVariable String trackId,
+                                                HttpServletRequest request,
+                                                HttpServletResponse response) throws IOException {
+        String audioPath = cacheService.getOfflineAudioPath(trackId);
+        if (audioPath == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return audioStreamingService.streamFile(Path.of(audioPath), "audio/mpeg", request, response);
+    }
+    
     // Get cache statistics
     @GetMapping("/stats")
     public ResponseEntity<ApiResponse> getCacheStats() {
         try {
             Map<String, Object> stats = cacheService.getCacheStats();
+            stats.put("namedCaches", namedCacheManager.getStats());
             return ResponseEntity.ok(
                 ApiResponse.success("Cache statistics", stats)
             );
@@ -106,12 +159,42 @@ public class CacheController {
         }
     }
     
+    // Invalidate one namespace (music-search, podcast-search, podcast-episodes, trending); offline data is kept
+    @DeleteMapping("/namespace/{namespace}")
+    public ResponseEntity<ApiResponse> invalidateNamespace(@PathVariable String namespace) {
+        try {
+            CacheNamespace cacheNamespace = CacheNamespace.valueOf(namespace.trim().toUpperCase().replace('-', '_'));
+            int invalidated = cacheService.invalidate(cacheNamespace);
+            return ResponseEntity.ok(
+                ApiResponse.success("Cache namespace invalidated",
+                    Map.of("namespace", cacheNamespace.name(), "invalidatedKeys", invalidated))
+            );
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Error invalidating cache namespace: " + e.getMessage()));
+        }
+    }
+    
+    // Invalidate every key with a prefix inside a namespace, e.g. podcast_episodes_<id>_
+    @DeleteMapping("/keys")
+    public ResponseEntity<ApiResponse> invalidatePrefix(@RequestParam String prefix) {
+        try {
+            int invalidated = cacheService.invalidatePrefix(prefix);
+            return ResponseEntity.ok(
+                ApiResponse.success("Cache keys invalidated",
+                    Map.of("prefix", prefix, "invalidatedKeys", invalidated))
+            );
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Error invalidating cache keys: " + e.getMessage()));
+        }
+    }
+    
     // Check if track is cached
     @GetMapping("/offline/check/{trackId}")
     public ResponseEntity<ApiResponse> checkIfCached(@PathVariable String trackId) {
         try {
-            String audioPath = cacheService.getOfflineAudioPath(trackId);
-            boolean isCached = audioPath != null;
+            boolean isCached = cacheService.isOfflineCached(trackId);
             
             return ResponseEntity.ok(
                 ApiResponse.success("Cache check result", 
@@ -143,4 +226,19 @@ public class CacheController {
                 .body(ApiResponse.error("Error getting cache info: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+    
+    // audioUrl, or the first of the track's audioSources
+    private static String findAudioUrl(Map<String, Object> trackData) {
+        if (trackData.get("audioUrl") instanceof String audioUrl && !audioUrl.isBlank()) {
+            return audioUrl;
+        }
+        if (trackData.get("audioSources") instanceof List<?> sources) {
+            for (Object source : sources) {
+                if (source instanceof Map<?, ?> map && map.get("url") instanceof String url && !url.isBlank()) {
+                    return url;
+                }
+            }
+        }
+        return null;
+    }
+}
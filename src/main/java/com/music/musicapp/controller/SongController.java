@@ -1,19 +1,21 @@
 package com.music.musicapp.controller;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.MediaType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 
 import com.music.musicapp.dto.ApiResponse;
 import com.music.musicapp.dto.SongDTO;
 import com.music.musicapp.model.Song;
 import com.music.musicapp.repository.SongRepository;
+import com.music.musicapp.service.AudioStreamingService;
+import com.music.musicapp.service.FileStorageService;
 import com.music.musicapp.service.SongService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.List;
@@ -29,6 +31,10 @@ public class SongController {
     private SongService songService;
     @Autowired
 private SongRepository songRepository;
+    @Autowired
+    private AudioStreamingService audioStreamingService;
+    @Autowired
+    private FileStorageService fileStorageService;
     // FIX: Upload Endpoint jo missing tha
  @PostMapping("/upload")
     public ResponseEntity<ApiResponse> uploadSong(
@@ -106,21 +112,22 @@ private SongRepository songRepository;
     // STREAMING ENDPOINT (Gaana Bajane Ke Liye)
     // ==========================================
     @GetMapping("/play/{filename}")
-    public ResponseEntity<Resource> playAudio(@PathVariable String filename) {
+    public StreamingResponseBody playAudio(@PathVariable String filename,
+                                           HttpServletRequest request,
+                                           HttpServletResponse response) throws IOException {
+        Path filePath;
         try {
-            Path filePath = Paths.get("uploads/audio").resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists()) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType("audio/mpeg"))
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            filePath = songService.resolveAudioPath(filename);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        if (fileStorageService.isImmutable(filename)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
         }
+        // Same range-aware engine as /api/stream/audio
+        return audioStreamingService.streamFile(filePath, fileStorageService.contentTypeOf(filename), filename,
+            request, response);
     }
     // NEW ENDPOINT: Update song audio file path
     @PutMapping("/{id}/audio")
@@ -233,7 +240,7 @@ public ResponseEntity<ApiResponse> addExternalSong(@RequestBody SongDTO songDTO)
         song.setAlbumArtUrl(songDTO.getAlbumArtUrl());
         song.setUploadedAt(LocalDateTime.now()); // Optional but good for stats
 
-        Song saved = songRepository.save(song);
+        Song saved = songService.saveExternalSong(song);
         return ResponseEntity.ok(ApiResponse.success("Song synced to DB", saved));
     } catch (Exception e) {
         return ResponseEntity.badRequest().body(ApiResponse.error("Sync failed: " + e.getMessage()));
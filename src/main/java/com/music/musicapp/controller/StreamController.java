@@ -1,17 +1,27 @@
 package com.music.musicapp.controller;
 
+import com.music.musicapp.model.StoredAudioFile;
+import com.music.musicapp.service.AudioMetadataService;
+import com.music.musicapp.service.AudioStreamingService;
 import com.music.musicapp.service.FileStorageService;
+import com.music.musicapp.service.HlsSegmenterService;
+import com.music.musicapp.service.UploadIndexService;
+import com.music.musicapp.service.WaveformService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/stream")
@@ -21,6 +31,21 @@ public class StreamController {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private AudioStreamingService audioStreamingService;
+    
+    @Autowired
+    private HlsSegmenterService hlsSegmenterService;
+    
+    @Autowired
+    private AudioMetadataService audioMetadataService;
+    
+    @Autowired
+    private WaveformService waveformService;
+    
+    @Autowired
+    private UploadIndexService uploadIndexService;
+    
     // UPLOAD AUDIO FILE
     @PostMapping("/upload")
     public ResponseEntity<?> uploadAudioFile(@RequestParam("file") MultipartFile file) {
@@ -51,71 +76,114 @@ public class StreamController {
     
     // STREAM AUDIO FILE (with Range headers support)
     @GetMapping("/audio/{filename}")
-    public ResponseEntity<Resource> streamAudio(@PathVariable String filename,
-                                                @RequestHeader(value = "Range", required = false) String rangeHeader) {
+    public StreamingResponseBody streamAudio(@PathVariable String filename,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) throws IOException {
+        // Only the requested byte range is sent; seeking never re-sends the whole file
+        Path filePath = fileStorageService.getFilePath(filename);
+        if (fileStorageService.isImmutable(filename)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        }
+        // Paced near the track's bitrate so full-file downloads cannot starve live listeners
+        return audioStreamingService.streamFile(filePath, fileStorageService.contentTypeOf(filename), filename,
+            request, response);
+    }
+    
+    // HLS PLAYLIST (503 with Retry-After while a background job segments the file)
+    @GetMapping("/hls/{filename}/index.m3u8")
+    public StreamingResponseBody getHlsPlaylist(@PathVariable String filename,
+                                                HttpServletRequest request,
+                                                HttpServletResponse response) throws IOException {
+        Path source = fileStorageService.getFilePath(filename);
+        if (!Files.isRegularFile(source) || !hlsSegmenterService.isSegmentable(source)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        
         try {
-            // Check if file exists
-            if (!fileStorageService.fileExists(filename)) {
-                return ResponseEntity.notFound().build();
+            String version = hlsSegmenterService.findOrQueueVersion(source);
+            if (version == null) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(hlsSegmenterService.getRetryAfterSeconds()));
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return null;
             }
-            
-            Path filePath = fileStorageService.getFilePath(filename);
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (!resource.exists()) {
+            // Playlist URL is stable, so clients revalidate it (cheap 304 via ETag)
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            return audioStreamingService.streamFile(hlsSegmenterService.getPlaylistPath(filename, version),
+                "application/vnd.apple.mpegurl", request, response);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+    }
+    
+    // HLS SEGMENT (content never changes for a given version)
+    @GetMapping("/hls/{filename}/{version}/{segment}")
+    public StreamingResponseBody getHlsSegment(@PathVariable String filename,
+                                               @PathVariable String version,
+                                               @PathVariable String segment,
+                                               HttpServletRequest request,
+                                               HttpServletResponse response) throws IOException {
+        try {
+            Path segmentPath = hlsSegmenterService.getSegmentPath(filename, version, segment);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+            return audioStreamingService.streamFile(segmentPath, "audio/mpeg", filename, request, response);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+    }
+    
+    // WAVEFORM PEAKS (binary, see WaveformService for the layout)
+    @GetMapping("/waveform/{filename}")
+    public StreamingResponseBody getWaveform(@PathVariable String filename,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) throws IOException {
+        Path source = fileStorageService.getFilePath(filename);
+        if (!Files.isRegularFile(source) || !waveformService.isSupported(source)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        
+        try {
+            Path peaksFile = waveformService.generate(source);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, waveformCacheControl(filename));
+            return audioStreamingService.streamFile(peaksFile, "application/octet-stream", request, response);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+    }
+    
+    // WAVEFORM PEAKS as JSON; ?buckets= picks the closest resolution
+    @GetMapping("/waveform/{filename}/json")
+    public ResponseEntity<?> getWaveformJson(@PathVariable String filename,
+                                             @RequestParam(required = false) Integer buckets) {
+        try {
+            Path source = fileStorageService.getFilePath(filename);
+            if (!Files.isRegularFile(source) || !waveformService.isSupported(source)) {
                 return ResponseEntity.notFound().build();
             }
             
-            // Get file length
-            long fileLength = resource.contentLength();
-            
-            // Prepare response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_TYPE, "audio/mpeg");
-            headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
-            
-            // Handle Range header for seeking
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                String range = rangeHeader.substring(6);
-                String[] ranges = range.split("-");
-                
-                long start = Long.parseLong(ranges[0]);
-                long end = fileLength - 1;
-                
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Long.parseLong(ranges[1]);
-                }
-                
-                // Validate range
-                if (start > end || start < 0 || end >= fileLength) {
-                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
-                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
-                        .build();
-                }
-                
-                // Partial content response
-                long contentLength = end - start + 1;
-                headers.add(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
-                headers.setContentLength(contentLength);
-                
-                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .headers(headers)
-                    .body(resource);
-            } else {
-                // Full file response
-                headers.setContentLength(fileLength);
-                return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(resource);
-            }
-            
-        } catch (MalformedURLException e) {
+            Path peaksFile = waveformService.generate(source);
+            return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, waveformCacheControl(filename))
+                .body(waveformService.readPeaks(peaksFile, buckets));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("{\"success\": false, \"message\": \"Error reading waveform: " + e.getMessage() + "\"}");
         }
     }
     
+    // Peaks of a blob never change; older uploads can be replaced under the same name
+    private String waveformCacheControl(String filename) {
+        return fileStorageService.isImmutable(filename)
+            ? "public, max-age=31536000, immutable"
+            : "public, max-age=86400";
+    }
+    
     // GET FILE INFO (metadata) - SIMPLIFIED VERSION
     @GetMapping("/info/{filename}")
     public ResponseEntity<?> getFileInfo(@PathVariable String filename) {
@@ -124,6 +192,12 @@ public class StreamController {
                 return ResponseEntity.notFound().build();
             }
             
+            // Extracted metadata lives on the song row; no file is opened for it
+            Optional<Map<String, Object>> stored = audioMetadataService.getStoredMetadata(filename);
+            if (stored.isPresent()) {
+                return ResponseEntity.ok(stored.get());
+            }
+            
             Path filePath = fileStorageService.getFilePath(filename);
             
             // Get file size
@@ -135,10 +209,11 @@ public class StreamController {
             }
             
             // Simple metadata
-            return ResponseEntity.ok()
-                .body("{\"filename\": \"" + filename + 
-                     "\", \"size\": " + fileSize + 
-                     ", \"contentType\": \"audio/mpeg\"}");
+            Map<String, Object> info = new HashMap<>();
+            info.put("filename", filename);
+            info.put("size", fileSize);
+            info.put("contentType", fileStorageService.contentTypeOf(filename));
+            return ResponseEntity.ok(info);
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -148,62 +223,35 @@ public class StreamController {
     
     // Sample audio endpoint for testing
     @GetMapping("/sample")
-    public ResponseEntity<Resource> getSampleAudio() {
-        try {
-            // Try to find any audio file in uploads directory
-            Path uploadPath = fileStorageService.getFilePath("");
-            
-            // If no files uploaded, return a simple message
-            if (!Files.exists(uploadPath) || Files.list(uploadPath).count() == 0) {
-                // Create a simple test response
-                String testMessage = "No audio files uploaded yet. Please upload an MP3 file.";
-                return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "text/plain")
-                    .body(new org.springframework.core.io.ByteArrayResource(testMessage.getBytes()));
-            }
-            
-            // Get first file from uploads
-            java.util.Optional<Path> firstFile = Files.list(uploadPath).findFirst();
-            if (firstFile.isPresent()) {
-                Path samplePath = firstFile.get();
-                Resource resource = new UrlResource(samplePath.toUri());
-                
-                return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "audio/mpeg")
-                    .body(resource);
-            }
-            
-            return ResponseEntity.notFound().build();
-            
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public StreamingResponseBody getSampleAudio(HttpServletRequest request,
+                                                HttpServletResponse response) throws IOException {
+        // Any indexed upload will do; no directory listing needed
+        StoredAudioFile sample = uploadIndexService.first();
+        
+        // If no files uploaded, return a simple message
+        if (sample == null) {
+            response.setContentType("text/plain");
+            response.getWriter().write("No audio files uploaded yet. Please upload an MP3 file.");
+            return null;
         }
+        
+        Path samplePath = fileStorageService.getFilePath(sample.getName());
+        return audioStreamingService.streamFile(samplePath, AudioMetadataService.contentTypeFor(sample.getFormat()),
+            sample.getName(), request, response);
     }
     
-    // List uploaded audio files
+    // List uploaded audio files (paged by name: pass the returned nextCursor as ?after=)
     @GetMapping("/list")
-    public ResponseEntity<?> listAudioFiles() {
-        try {
-            Path uploadPath = fileStorageService.getFilePath("");
-            
-            if (!Files.exists(uploadPath)) {
-                return ResponseEntity.ok()
-                    .body("{\"files\": [], \"message\": \"Upload directory does not exist\"}");
-            }
-            
-            java.util.List<String> files = Files.list(uploadPath)
-                .map(path -> path.getFileName().toString())
-                .filter(filename -> filename.toLowerCase().endsWith(".mp3") || 
-                                   filename.toLowerCase().endsWith(".wav") ||
-                                   filename.toLowerCase().endsWith(".ogg"))
-                .toList();
-            
-            return ResponseEntity.ok()
-                .body("{\"files\": " + files.toString() + ", \"count\": " + files.size() + "}");
-            
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("{\"success\": false, \"message\": \"Error listing files: " + e.getMessage() + "\"}");
-        }
+    public ResponseEntity<?> listAudioFiles(@RequestParam(required = false) String after,
+                                            @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 1000));
+        List<StoredAudioFile> page = uploadIndexService.list(after, pageSize);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("files", page.stream().map(StoredAudioFile::getName).toList());
+        result.put("entries", page);
+        result.put("count", uploadIndexService.size());
+        result.put("nextCursor", page.size() < pageSize ? null : page.get(page.size() - 1).getName());
+        return ResponseEntity.ok(result);
     }
-}
\ No newline at end of file
+}
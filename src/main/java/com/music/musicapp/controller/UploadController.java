@@ -0,0 +1,145 @@
+package com.music.musicapp.controller;
+
+import com.music.musicapp.dto.ApiResponse;
+import com.music.musicapp.dto.SongDTO;
+import com.music.musicapp.exception.ResourceNotFoundException;
+import com.music.musicapp.exception.ValidationException;
+import com.music.musicapp.model.UploadSession;
+import com.music.musicapp.service.ResumableUploadService;
+import com.music.musicapp.service.SongService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Resumable uploads: create a session, PUT chunks at offsets, then complete
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "*")
+public class UploadController {
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private SongService songService;
+
+    // Create an upload session
+    @PostMapping
+    public ResponseEntity<ApiResponse> createUpload(@RequestBody Map<String, Object> request) {
+        try {
+            String filename = (String) request.get("filename");
+            Object size = request.get("size");
+            if (filename == null || size == null) {
+                return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("filename and size are required"));
+            }
+
+            UploadSession session = resumableUploadService.createSession(
+                filename,
+                Long.parseLong(size.toString()),
+                (String) request.get("sha256"),
+                (String) request.get("title"),
+                (String) request.get("artist"),
+                (String) request.get("album"));
+
+            return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Upload session created", describe(session, 0)));
+        } catch (ValidationException | NumberFormatException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("Could not create upload: " + e.getMessage()));
+        }
+    }
+
+    // Query the committed offset (where the next chunk must start)
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<ApiResponse> getUpload(@PathVariable String uploadId) {
+        try {
+            UploadSession session = resumableUploadService.getSession(uploadId);
+            long offset = resumableUploadService.getCommittedOffset(uploadId);
+            return ResponseEntity.ok(ApiResponse.success("Upload status", describe(session, offset)));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("Error reading upload: " + e.getMessage()));
+        }
+    }
+
+    // Upload one chunk; the raw request body is streamed to disk
+    @PutMapping("/{uploadId}")
+    public ResponseEntity<ApiResponse> uploadChunk(@PathVariable String uploadId,
+                                                   @RequestParam long offset,
+                                                   HttpServletRequest request) {
+        try {
+            long committed = resumableUploadService.writeChunk(uploadId, offset, request.getInputStream());
+            return ResponseEntity.ok(
+                ApiResponse.success("Chunk stored", Map.of("uploadId", uploadId, "offset", committed)));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            // Client is out of sync; it should GET the offset and resume from there
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("Error storing chunk: " + e.getMessage()));
+        }
+    }
+
+    // Finalize: verify, move into the blob store and optionally create the song
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<ApiResponse> completeUpload(@PathVariable String uploadId) {
+        try {
+            UploadSession session = resumableUploadService.getSession(uploadId);
+            String filename = resumableUploadService.complete(uploadId);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("filename", filename);
+            if (session.getTitle() != null && !session.getTitle().isBlank()) {
+                SongDTO song = songService.createSongForBlob(
+                    session.getTitle(), session.getArtist(),
+                    session.getAlbum() != null ? session.getAlbum() : "Unknown", filename);
+                result.put("song", song);
+            }
+            return ResponseEntity.ok(ApiResponse.success("Upload complete", result));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Upload could not be completed: " + e.getMessage()));
+        }
+    }
+
+    // Abort and discard received chunks
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<ApiResponse> abortUpload(@PathVariable String uploadId) {
+        try {
+            resumableUploadService.abort(uploadId);
+            return ResponseEntity.ok(ApiResponse.success("Upload aborted", null));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("Error aborting upload: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> describe(UploadSession session, long offset) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("uploadId", session.getId());
+        info.put("filename", session.getFilename());
+        info.put("size", session.getTotalSize());
+        info.put("offset", offset);
+        info.put("chunkUrl", "/api/uploads/" + session.getId() + "?offset=" + offset);
+        return info;
+    }
+}
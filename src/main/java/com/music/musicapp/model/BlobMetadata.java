@@ -0,0 +1,11 @@
+package com.music.musicapp.model;
+
+import lombok.Data;
+
+@Data
+public class BlobMetadata {
+    private String format; // Lowercase extension the content was first uploaded with, e.g. "mp3"
+    private String contentType;
+    private int references; // Stores of this content not yet released by a delete
+    private long createdAt; // Epoch millis
+}
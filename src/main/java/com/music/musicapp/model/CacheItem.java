@@ -9,8 +9,10 @@ import java.util.Map;
 public class CacheItem {
     private String key;
     private List<Map<String, Object>> data;
+    private byte[] packedData; // data in CompactRecordCodec form, when the memory tier keeps payloads packed
     private Object objectData;
     private LocalDateTime timestamp;
     private int ttlSeconds; // Time to live in seconds
+    private int staleTtlSeconds; // After ttlSeconds, how long the stale value may still be served while it is refreshed
     private long size; // Size in bytes
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.music.musicapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredAudioFile {
+    private String name; // Name used in /api/stream URLs (blob name or legacy filename)
+    private long size; // Bytes
+    private long lastModified; // Epoch millis
+    private String format; // Lowercase extension, e.g. "mp3"
+}
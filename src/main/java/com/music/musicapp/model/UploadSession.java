@@ -0,0 +1,16 @@
+package com.music.musicapp.model;
+
+import lombok.Data;
+
+@Data
+public class UploadSession {
+    private String id;
+    private String filename; // Original client filename (only used for the blob's format)
+    private long totalSize; // Declared size in bytes
+    private String sha256; // Optional checksum verified on completion
+    private String title; // Optional: create a Song on completion
+    private String artist;
+    private String album;
+    private long createdAt; // Epoch millis
+    private long updatedAt; // Epoch millis
+}
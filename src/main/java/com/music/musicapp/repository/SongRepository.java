@@ -45,4 +45,13 @@ public interface SongRepository extends JpaRepository<Song, Long> {
 
     // SongRepository.java ke andar
 Optional<Song> findByAudioUrl(String audioUrl);
+
+    // Stored upload lookup (filePath holds the bare filename)
+    Optional<Song> findFirstByFilePath(String filePath);
+
+    // Songs sharing a content-addressed blob
+    long countByFilePath(String filePath);
+
+    // Stored uploads whose audio metadata has not been extracted yet
+    List<Song> findByFilePathIsNotNullAndFileSizeIsNull();
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.model.Song;
+import com.music.musicapp.repository.SongRepository;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background tag/header extraction for uploaded songs.
+ *
+ * Files are read with jaudiotagger on the media job queue and the results are
+ * collected and written back to the songs table in batches, so duration,
+ * bitrate, format and size become plain column reads for every endpoint.
+ * A backfill pass covers songs uploaded before the pipeline existed.
+ */
+@Service
+public class AudioMetadataService {
+
+    @Value("${media.metadata.batch-size:50}")
+    private int batchSize;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MediaJobQueue mediaJobQueue;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final ConcurrentLinkedQueue<ExtractedMetadata> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private final LongAdder extracted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public AudioMetadataService() {
+        // jaudiotagger logs every frame it inspects at INFO
+        Logger.getLogger("org.jaudiotagger").setLevel(Level.WARNING);
+    }
+
+    // Queue extraction for a freshly stored song
+    public void extractInBackground(Long songId, String filename) {
+        mediaJobQueue.submit("metadata song " + songId, () -> {
+            extract(songId, filename);
+            if (pendingUpdates.size() >= batchSize) {
+                flushPendingUpdates();
+            }
+        });
+    }
+
+    // Queue every song that has a stored file but no metadata yet; returns how many were queued
+    public int backfill() {
+        List<Song> songs = songRepository.findByFilePathIsNotNullAndFileSizeIsNull();
+        int queued = 0;
+        for (Song song : songs) {
+            Long songId = song.getId();
+            String filename = song.getFilePath();
+            boolean accepted = mediaJobQueue.submit("metadata backfill " + songId, () -> {
+                extract(songId, filename);
+                if (pendingUpdates.size() >= batchSize) {
+                    flushPendingUpdates();
+                }
+            });
+            if (!accepted) break; // queue full, the rest is picked up by the next backfill
+            queued++;
+        }
+        System.out.println("Metadata backfill queued " + queued + " of " + songs.size() + " songs");
+        return queued;
+    }
+
+    // Write collected results in one batch
+    @Scheduled(fixedDelay = 5000)
+    public synchronized void flushPendingUpdates() {
+        if (pendingUpdates.isEmpty()) return;
+
+        Map<Long, ExtractedMetadata> batch = new HashMap<>();
+        ExtractedMetadata item;
+        while ((item = pendingUpdates.poll()) != null) {
+            batch.put(item.songId, item);
+        }
+
+        List<Song> songs = songRepository.findAllById(batch.keySet());
+        for (Song song : songs) {
+            ExtractedMetadata metadata = batch.get(song.getId());
+            song.setFileSize(metadata.fileSize);
+            song.setFileFormat(metadata.fileFormat);
+            if (metadata.duration != null) song.setDuration(metadata.duration);
+            if (metadata.bitrate != null) song.setBitrate(metadata.bitrate);
+            if (song.getGenre() == null && metadata.genre != null) song.setGenre(metadata.genre);
+            if (song.getReleaseYear() == null && metadata.releaseYear != null) song.setReleaseYear(metadata.releaseYear);
+        }
+        songRepository.saveAll(songs);
+
+        // Cached song DTOs predate the new columns
+        Cache songsById = cacheManager.getCache("songs-by-id");
+        if (songsById != null) {
+            songs.forEach(song -> songsById.evict(song.getId()));
+        }
+    }
+
+    // Column-backed metadata for a stored file, if a song row describes it
+    public Optional<Map<String, Object>> getStoredMetadata(String filename) {
+        return songRepository.findFirstByFilePath(filename)
+            .filter(song -> song.getFileSize() != null)
+            .map(song -> {
+                Map<String, Object> info = new HashMap<>();
+                info.put("filename", filename);
+                info.put("size", song.getFileSize());
+                info.put("contentType", contentTypeFor(song.getFileFormat()));
+                info.put("format", song.getFileFormat());
+                info.put("duration", song.getDuration());
+                info.put("bitrate", song.getBitrate());
+                return info;
+            });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("extracted", extracted.sum());
+        stats.put("failed", failed.sum());
+        stats.put("pendingUpdates", pendingUpdates.size());
+        return stats;
+    }
+
+    public static String contentTypeFor(String format) {
+        if (format == null) return "audio/mpeg";
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "wav": return "audio/wav";
+            case "ogg": return "audio/ogg";
+            case "flac": return "audio/flac";
+            case "m4a":
+            case "mp4": return "audio/mp4";
+            case "aac": return "audio/aac";
+            default: return "audio/mpeg";
+        }
+    }
+
+    private void extract(Long songId, String filename) {
+        Path file = fileStorageService.getSongAudioPath(filename);
+        try {
+            ExtractedMetadata metadata = new ExtractedMetadata(songId);
+            metadata.fileSize = Files.size(file);
+            metadata.fileFormat = fileStorageService.formatOf(filename);
+
+            // Blobs have no extension for jaudiotagger to pick a reader from; their format comes from the blob metadata
+            AudioFile audioFile = metadata.fileFormat != null
+                ? AudioFileIO.readAs(file.toFile(), metadata.fileFormat)
+                : AudioFileIO.read(file.toFile());
+            AudioHeader header = audioFile.getAudioHeader();
+            if (header != null) {
+                metadata.duration = header.getTrackLength();
+                metadata.bitrate = (int) header.getBitRateAsNumber();
+            }
+
+            Tag tag = audioFile.getTag();
+            if (tag != null) {
+                String genre = tag.getFirst(FieldKey.GENRE);
+                metadata.genre = (genre == null || genre.isBlank()) ? null : genre;
+                metadata.releaseYear = parseYear(tag.getFirst(FieldKey.YEAR));
+            }
+
+            pendingUpdates.add(metadata);
+            extracted.increment();
+        } catch (Exception e) {
+            failed.increment();
+            System.err.println("Metadata extraction failed for " + filename + ": " + e.getMessage());
+
+            // Still record size/format so the song is not retried by every backfill
+            try {
+                ExtractedMetadata metadata = new ExtractedMetadata(songId);
+                metadata.fileSize = Files.size(file);
+                metadata.fileFormat = fileStorageService.formatOf(filename);
+                pendingUpdates.add(metadata);
+            } catch (Exception ignored) {
+                // file is gone; nothing to record
+            }
+        }
+    }
+
+    private static Integer parseYear(String value) {
+        if (value == null || value.length() < 4) return null;
+        try {
+            return Integer.parseInt(value.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // One extraction result waiting to be written back
+    private static final class ExtractedMetadata {
+        private final Long songId;
+        private Long fileSize;
+        private String fileFormat;
+        private Integer duration;
+        private Integer bitrate;
+        private String genre;
+        private Integer releaseYear;
+
+        private ExtractedMetadata(Long songId) {
+            this.songId = songId;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.music.musicapp.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte-range streaming engine shared by the audio endpoints.
+ *
+ * Only the requested regions of a file are ever sent. When the servlet container
+ * supports sendfile (Tomcat NIO does by default) a single region is handed to the
+ * kernel; otherwise regions are pushed with {@link FileChannel#transferTo}.
+ * Conditional requests (If-None-Match, If-Modified-Since, If-Range) are answered
+ * from a strong ETag derived from the file's identity, size and mtime. Tracks held
+ * by {@link HotTrackCache} are served from their mapping with no per-request stat.
+ * Bodies that cannot go through sendfile are returned as a StreamingResponseBody
+ * and written in bounded chunks from a virtual thread (see StreamingConfig), with
+ * the long streaming timeout instead of the app-wide async default.
+ */
+@Service
+public class AudioStreamingService {
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
+    // Tomcat request attributes for sendfile (see org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+
+    // Set on requests answered with a body from here; StreamingConfig gives only those the long async timeout
+    public static final String STREAMING_REQUEST_ATTRIBUTE = AudioStreamingService.class.getName() + ".streaming";
+
+    // Largest single write; bounds how long one blocked write can go unnoticed
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    // Stream a file to the client, honouring conditional and Range headers
+    public StreamingResponseBody streamFile(Path file, String contentType,
+                                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return streamFile(file, contentType, null, request, response);
+    }
+
+    /**
+     * Same, paced by BandwidthShaper at the bitrate of the stored audio named
+     * shapingKey (null = unpaced). Status and headers are set here on the request
+     * thread; the returned body (null when there is nothing left to write) is run
+     * by Spring MVC on a virtual thread, so a slow listener never holds a
+     * container thread.
+     */
+    public StreamingResponseBody streamFile(Path file, String contentType, String shapingKey,
+                                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long fileLength;
+        long lastModified;
+        String etag;
+
+        // Hot tracks are answered from the mapping without any filesystem metadata calls
+        HotTrackCache.Entry cached = hotTrackCache.get(file);
+        if (cached != null) {
+            fileLength = cached.getLength();
+            lastModified = cached.getLastModified();
+            etag = cached.getEtag();
+        } else {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+            if (!attributes.isRegularFile()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+
+            fileLength = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+            etag = buildETag(attributes);
+            cached = hotTrackCache.recordMiss(file, attributes, etag);
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        // The client already holds this exact file
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        List<Region> regions;
+        try {
+            regions = resolveRegions(request, etag, lastModified, fileLength);
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+
+        boolean headRequest = "HEAD".equals(request.getMethod());
+        boolean paced = shapingKey != null && bandwidthShaper.isEnabled();
+
+        if (regions.size() > 1) {
+            return prepareMultipart(file, cached, contentType, fileLength, regions, headRequest,
+                paced ? shapingKey : null, request, response);
+        }
+
+        Region region;
+        if (regions.isEmpty()) {
+            // Full file response
+            region = new Region(0, fileLength - 1);
+            response.setStatus(HttpServletResponse.SC_OK);
+        } else {
+            // Partial content response
+            region = regions.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, region.contentRange(fileLength));
+        }
+
+        response.setContentType(contentType);
+        response.setContentLengthLong(region.length());
+
+        if (headRequest || region.length() <= 0) {
+            return null;
+        }
+
+        // Let the container hand the region to the kernel when it can (it cannot be paced there)
+        if (cached == null && !paced && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, region.start);
+            request.setAttribute(SENDFILE_END, region.end + 1); // exclusive
+            return null;
+        }
+
+        HotTrackCache.Entry mapped = cached;
+        String pacingKey = paced ? shapingKey : null;
+        request.setAttribute(STREAMING_REQUEST_ATTRIBUTE, Boolean.TRUE);
+        return outputStream -> {
+            try (BodyWriter body = new BodyWriter(file, mapped, pacingKey, request, outputStream)) {
+                body.write(region);
+            }
+        };
+    }
+
+    // Strong validator: changes whenever the file is replaced or rewritten
+    public String buildETag(BasicFileAttributes attributes) {
+        StringBuilder etag = new StringBuilder("\"");
+        Object fileKey = attributes.fileKey();
+        if (fileKey != null) {
+            etag.append(Integer.toHexString(fileKey.hashCode())).append('-');
+        }
+        etag.append(Long.toHexString(attributes.size()))
+            .append('-')
+            .append(Long.toHexString(attributes.lastModifiedTime().toMillis()))
+            .append('"');
+        return etag.toString();
+    }
+
+    // If-None-Match takes precedence over If-Modified-Since (RFC 9110 13.2.2)
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince = readDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // Satisfiable regions for the Range header, or an empty list for the full file
+    private List<Region> resolveRegions(HttpServletRequest request, String etag,
+                                        long lastModified, long fileLength) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return List.of();
+        }
+
+        // A stale If-Range means the client's partial copy is useless: send everything
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(request, ifRange, etag, lastModified)) {
+            return List.of();
+        }
+
+        // Handles "a-b", open-ended "a-" and suffix "-n" specs; throws on garbage
+        List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+
+        List<Region> regions = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : ranges) {
+            Region region;
+            try {
+                region = new Region(range.getRangeStart(fileLength), range.getRangeEnd(fileLength));
+            } catch (IllegalArgumentException e) {
+                continue; // unsatisfiable spec, the others may still be served
+            }
+            regions.add(region);
+            total += region.length();
+        }
+
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No satisfiable range in: " + rangeHeader);
+        }
+        if (regions.size() > 1 && total > fileLength) {
+            // Overlapping ranges that add up to more than the file are an amplification attempt
+            throw new IllegalArgumentException("The sum of all ranges exceeds the file length");
+        }
+        return regions;
+    }
+
+    // If-Range needs a strong match on the ETag, or an exact Last-Modified date
+    private boolean ifRangeMatches(HttpServletRequest request, String ifRange,
+                                   String etag, long lastModified) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(etag);
+        }
+        long date = readDateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    // multipart/byteranges body, one part per region
+    private StreamingResponseBody prepareMultipart(Path file, HotTrackCache.Entry cached, String contentType,
+                                                   long fileLength, List<Region> regions, boolean headRequest,
+                                                   String pacingKey, HttpServletRequest request,
+                                                   HttpServletResponse response) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (Region region : regions) {
+            String header = CRLF + "--" + boundary + CRLF
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                + HttpHeaders.CONTENT_RANGE + ": " + region.contentRange(fileLength) + CRLF
+                + CRLF;
+            byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(bytes);
+            contentLength += bytes.length + region.length();
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        if (headRequest) {
+            return null;
+        }
+
+        request.setAttribute(STREAMING_REQUEST_ATTRIBUTE, Boolean.TRUE);
+        return outputStream -> {
+            try (BodyWriter body = new BodyWriter(file, cached, pacingKey, request, outputStream)) {
+                for (int i = 0; i < regions.size(); i++) {
+                    body.write(partHeaders.get(i));
+                    body.write(regions.get(i));
+                }
+                body.write(closing);
+            }
+        };
+    }
+
+    // Copy [position, position + count) of the channel to the output without staging it on the heap
+    public void transferRegion(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long remaining = count;
+        while (remaining > 0) {
+            // Bounded steps, so a vanished client is noticed within one chunk
+            long written = channel.transferTo(position, Math.min(remaining, WRITE_CHUNK), target);
+            if (written <= 0) {
+                break; // file shrank underneath us
+            }
+            position += written;
+            remaining -= written;
+        }
+    }
+
+    // Copy a region straight out of a mapped hot track
+    private void writeRegion(HotTrackCache.Entry cached, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        ByteBuffer slice = cached.slice(position, count);
+        while (slice.hasRemaining()) {
+            int end = Math.min(slice.limit(), slice.position() + WRITE_CHUNK);
+            ByteBuffer chunk = slice.duplicate().limit(end);
+            while (chunk.hasRemaining()) {
+                target.write(chunk);
+            }
+            slice.position(end);
+        }
+    }
+
+    /**
+     * Writes one response body on the async (virtual) thread: from the hot-track
+     * mapping or the file, through the bandwidth shaper when the stream is paced.
+     * A client that disconnects surfaces as an IOException from the next chunk,
+     * which ends the write and releases the file and the shaper slot.
+     */
+    private final class BodyWriter implements Closeable {
+
+        private final Path file;
+        private final HotTrackCache.Entry cached;
+        private final BandwidthShaper.ShapedStream shaped;
+        private final OutputStream out;
+        private FileChannel channel;
+
+        private BodyWriter(Path file, HotTrackCache.Entry cached, String pacingKey,
+                           HttpServletRequest request, OutputStream target) {
+            this.file = file;
+            this.cached = cached;
+            this.shaped = pacingKey == null ? null : bandwidthShaper.open(pacingKey, request);
+            this.out = shaped == null ? target : shaped.wrap(target);
+        }
+
+        private void write(Region region) throws IOException {
+            if (cached != null) {
+                writeRegion(cached, region.start, region.length(), out);
+                return;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            transferRegion(channel, region.start, region.length(), out);
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.flush();
+            } finally {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (shaped != null) {
+                    shaped.close();
+                }
+            }
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long readDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1; // unparseable dates are treated as absent
+        }
+    }
+
+    // Inclusive byte range within a file
+    private static final class Region {
+        private final long start;
+        private final long end;
+
+        private Region(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private long length() {
+            return end - start + 1;
+        }
+
+        private String contentRange(long fileLength) {
+            return "bytes " + start + "-" + end + "/" + fileLength;
+        }
+    }
+}
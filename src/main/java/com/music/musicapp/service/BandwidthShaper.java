@@ -0,0 +1,224 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.model.Song;
+import com.music.musicapp.repository.SongRepository;
+import com.music.musicapp.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Paces audio egress so bulk downloaders cannot starve real-time listeners.
+ *
+ * Every shaped stream draws from three token buckets: its own, sized from the
+ * track's bitrate (Song.bitrate) times a headroom factor with a few seconds of
+ * burst for fast start; one per signed-in user shared by all of that user's
+ * streams; and a global egress budget. Anonymous streams skip the per-user
+ * bucket: behind NAT or a proxy one client address stands for many listeners,
+ * so it would make them share one user's budget. Writes are taken in
+ * small pieces, so streams contending for the global budget interleave fairly.
+ * Shaped streams never use sendfile, since the kernel could not be paced.
+ */
+@Service
+public class BandwidthShaper {
+
+    // Largest write that is paced as one unit
+    private static final int PACING_CHUNK = 16 * 1024;
+
+    // Known bitrates are remembered; unknown ones are re-read once metadata may have landed
+    private static final int MAX_BITRATE_ENTRIES = 10_000;
+    private static final long UNKNOWN_BITRATE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    @Value("${stream.shaping.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stream.shaping.bitrate-multiplier:1.5}")
+    private double bitrateMultiplier;
+
+    @Value("${stream.shaping.default-kbps:320}")
+    private int defaultKbps;
+
+    @Value("${stream.shaping.burst-seconds:10}")
+    private int burstSeconds;
+
+    @Value("${stream.shaping.per-user-kbps:4000}")
+    private int perUserKbps;
+
+    @Value("${stream.shaping.global-mbps:500}")
+    private int globalMbps;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    private TokenBucket globalBucket;
+    private final Map<String, UserBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, long[]> bitrates = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_BITRATE_ENTRIES;
+        }
+    };
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final LongAdder shapedBytes = new LongAdder();
+    private final LongAdder throttledBytes = new LongAdder();
+    private final LongAdder throttleWaitMillis = new LongAdder();
+
+    @PostConstruct
+    public void initialize() {
+        if (globalMbps > 0) {
+            long rate = globalMbps * 1_000_000L / 8;
+            globalBucket = new TokenBucket(rate, rate); // one second of burst
+        }
+    }
+
+    // Start pacing a response for the given stored file; null when shaping is off
+    public ShapedStream open(String filename, HttpServletRequest request) {
+        if (!enabled) return null;
+
+        long connectionRate = Math.max(1, (long) (bitrateKbps(filename) * bitrateMultiplier * 1000 / 8));
+        TokenBucket connection = new TokenBucket(connectionRate, connectionRate * burstSeconds);
+
+        // Anonymous streams are limited per connection only
+        String userKey = request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : null;
+        UserBucket user = userKey == null ? null : userBuckets.compute(userKey, (key, existing) -> {
+            UserBucket bucket = existing != null ? existing : new UserBucket(perUserKbps, burstSeconds);
+            bucket.streams++;
+            return bucket;
+        });
+
+        activeStreams.incrementAndGet();
+        return new ShapedStream(userKey, user, connection);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("activeStreams", activeStreams.get());
+        stats.put("activeUsers", userBuckets.size());
+        stats.put("shapedBytes", shapedBytes.sum());
+        stats.put("throttledBytes", throttledBytes.sum());
+        stats.put("throttleWaitMillis", throttleWaitMillis.sum());
+        return stats;
+    }
+
+    // Track bitrate from the song row, falling back to the configured default
+    private int bitrateKbps(String filename) {
+        long now = System.currentTimeMillis();
+        synchronized (bitrates) {
+            long[] known = bitrates.get(filename);
+            if (known != null && (known[0] > 0 || now - known[1] < UNKNOWN_BITRATE_RETRY_MILLIS)) {
+                return known[0] > 0 ? (int) known[0] : defaultKbps;
+            }
+        }
+
+        int kbps = songRepository.findFirstByFilePath(filename)
+            .map(Song::getBitrate)
+            .filter(bitrate -> bitrate != null && bitrate > 0)
+            .orElse(0);
+        synchronized (bitrates) {
+            bitrates.put(filename, new long[] {kbps, now});
+        }
+        return kbps > 0 ? kbps : defaultKbps;
+    }
+
+    // Shared by all concurrent streams of one user
+    private static final class UserBucket {
+        private final TokenBucket bucket;
+        private int streams; // guarded by the map's compute
+
+        private UserBucket(int kbps, int burstSeconds) {
+            long rate = kbps > 0 ? kbps * 1000L / 8 : 0;
+            this.bucket = rate > 0 ? new TokenBucket(rate, rate * burstSeconds) : null;
+        }
+    }
+
+    /**
+     * One paced response. Wrap the servlet output stream with {@link #wrap} and
+     * close this when the response is done.
+     */
+    public final class ShapedStream implements AutoCloseable {
+
+        private final String userKey; // null for anonymous streams
+        private final UserBucket user;
+        private final TokenBucket connection;
+        private boolean closed;
+
+        private ShapedStream(String userKey, UserBucket user, TokenBucket connection) {
+            this.userKey = userKey;
+            this.user = user;
+            this.connection = connection;
+        }
+
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    pace(1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        int chunk = Math.min(len, PACING_CHUNK);
+                        pace(chunk);
+                        out.write(b, off, chunk);
+                        off += chunk;
+                        len -= chunk;
+                    }
+                }
+            };
+        }
+
+        // Debit all buckets, then wait for the slowest of them
+        private void pace(int count) throws IOException {
+            long waitNanos = connection.take(count);
+            if (user != null && user.bucket != null) {
+                waitNanos = Math.max(waitNanos, user.bucket.take(count));
+            }
+            if (globalBucket != null) {
+                waitNanos = Math.max(waitNanos, globalBucket.take(count));
+            }
+
+            shapedBytes.add(count);
+            if (waitNanos <= 0) return;
+
+            throttledBytes.add(count);
+            throttleWaitMillis.add(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while pacing stream");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            activeStreams.decrementAndGet();
+            if (userKey == null) return;
+            userBuckets.computeIfPresent(userKey, (key, bucket) -> --bucket.streams <= 0 ? null : bucket);
+        }
+    }
+}
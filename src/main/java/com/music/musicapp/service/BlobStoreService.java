@@ -0,0 +1,359 @@
+package com.music.musicapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.musicapp.model.BlobMetadata;
+import com.music.musicapp.repository.SongRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed, deduplicating store for uploaded audio.
+ *
+ * A blob is named by the SHA-256 of its bytes alone (64 hex) and lives under a
+ * two-level fan-out, ab/cd/&lt;hash&gt;, so no directory grows unbounded. The hash is
+ * computed while the upload is streamed to a temp file; identical uploads
+ * therefore share one file whatever they were called, and a blob's content can
+ * never change under its name. The format and content type of the first upload
+ * are kept next to it in ab/cd/&lt;hash&gt;.meta, together with the number of stores
+ * not yet released by a delete. A blob goes when that count reaches zero and
+ * no Song.filePath points at it; a periodic sweep catches anything a crash left
+ * behind. Blobs stored before this layout keep their "&lt;hash&gt;.&lt;ext&gt;" names
+ * and are never collected.
+ */
+@Service
+public class BlobStoreService {
+
+    // Bare hash; "<hash>.<ext>" is the layout older blobs were stored under
+    private static final Pattern BLOB_NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,8})?");
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern FORMAT = Pattern.compile("[a-z0-9]{1,8}");
+    private static final String METADATA_SUFFIX = ".meta";
+
+    // Leftovers of uploads that died mid-stream
+    private static final long STALE_TEMP_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_CACHED_METADATA = 10_000;
+
+    @Value("${blob.store.dir:./uploads/blobs}")
+    private String blobDir;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Formats are read on every stream request; metadata only changes through this service
+    private final Map<String, BlobMetadata> metadataCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BlobMetadata> eldest) {
+            return size() > MAX_CACHED_METADATA;
+        }
+    };
+
+    private final LongAdder storedBlobs = new LongAdder();
+    private final LongAdder dedupedUploads = new LongAdder();
+    private final LongAdder dedupedBytes = new LongAdder();
+    private final LongAdder collectedBlobs = new LongAdder();
+
+    // Stream an upload into the store and return its blob name
+    public String store(InputStream inputStream, String originalFilename) throws IOException {
+        Path tempFile = newTempFile();
+        try {
+            MessageDigest digest = sha256();
+            try (DigestInputStream in = new DigestInputStream(inputStream, digest)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            return commit(tempFile, hash, formatOf(originalFilename));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Move an already written file into the store; verifies the hash when one is expected
+    public String importFile(Path file, String originalFilename, String expectedSha256) throws IOException {
+        String hash = hashFile(file);
+        if (expectedSha256 != null && !expectedSha256.isBlank()
+                && !hash.equalsIgnoreCase(expectedSha256.trim())) {
+            throw new IOException("Checksum mismatch: expected " + expectedSha256 + " but got " + hash);
+        }
+        try {
+            return commit(file, hash, formatOf(originalFilename));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public String hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream()); // bytes only need to pass through the digest
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean isBlobName(String name) {
+        return name != null && BLOB_NAME.matcher(name).matches() && !name.endsWith(METADATA_SUFFIX);
+    }
+
+    // ab/cd/<hash> (or ab/cd/<hash>.<ext> for older blobs) under the blob root
+    public Path pathFor(String blobName) {
+        if (!isBlobName(blobName)) {
+            throw new IllegalArgumentException("Not a blob name: " + blobName);
+        }
+        return root().resolve(blobName.substring(0, 2))
+            .resolve(blobName.substring(2, 4))
+            .resolve(blobName);
+    }
+
+    public boolean exists(String blobName) {
+        return isBlobName(blobName) && Files.isRegularFile(pathFor(blobName));
+    }
+
+    // Number of songs pointing at this blob
+    public long referenceCount(String blobName) {
+        return songRepository.countByFilePath(blobName);
+    }
+
+    /**
+     * Lowercase audio format of a stored file, e.g. "mp3": from the metadata for
+     * bare-hash blobs, else from the name's extension. Null when unknown.
+     */
+    public String formatOf(String name) {
+        if (name == null) return null;
+        if (HASH.matcher(name).matches()) {
+            BlobMetadata metadata = metadata(name);
+            return metadata == null ? null : metadata.getFormat();
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return null;
+        String format = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return FORMAT.matcher(format).matches() ? format : null;
+    }
+
+    public String formatOf(Path file) {
+        return formatOf(file.getFileName().toString());
+    }
+
+    /**
+     * Drop one store of the blob, deleting the file once no other store refers
+     * to it. Returns false, changing nothing, while a song still points at it.
+     * Older blobs carry no count and are deleted at once, as before.
+     */
+    public synchronized boolean release(String blobName) throws IOException {
+        if (referenceCount(blobName) > 0) {
+            return false;
+        }
+        if (!HASH.matcher(blobName).matches()) {
+            return Files.deleteIfExists(pathFor(blobName));
+        }
+        BlobMetadata metadata = metadata(blobName);
+        if (metadata != null && metadata.getReferences() > 1) {
+            metadata.setReferences(metadata.getReferences() - 1);
+            saveMetadata(blobName, metadata);
+            return true; // other uploads of the same content keep the file
+        }
+        return deleteBlob(blobName);
+    }
+
+    // Remove blobs nothing refers to any more, metadata whose blob is gone, and stale temp files
+    @Scheduled(fixedDelayString = "${blob.store.gc-interval-ms:3600000}", initialDelay = 60000)
+    public void collectGarbage() {
+        Path root = root();
+        if (!Files.isDirectory(root)) return;
+
+        List<Path> metadataFiles = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root, 3)) {
+            walk.filter(path -> path.getFileName().toString().endsWith(METADATA_SUFFIX)).forEach(metadataFiles::add);
+        } catch (IOException e) {
+            System.err.println("Error scanning blob store: " + e.getMessage());
+            return;
+        }
+
+        int collected = 0;
+        for (Path metadataFile : metadataFiles) {
+            String name = metadataFile.getFileName().toString();
+            String hash = name.substring(0, name.length() - METADATA_SUFFIX.length());
+            if (!HASH.matcher(hash).matches()) continue;
+            try {
+                if (collectIfUnreferenced(hash)) collected++;
+            } catch (IOException e) {
+                System.err.println("Error collecting blob " + hash + ": " + e.getMessage());
+            }
+        }
+        collectedBlobs.add(collected);
+
+        int staleTemps = deleteStaleTempFiles();
+        if (collected > 0 || staleTemps > 0) {
+            System.out.println("Blob GC: removed " + collected + " unreferenced blobs, " + staleTemps + " stale temp files");
+        }
+    }
+
+    public Path getRoot() {
+        return root();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("storedBlobs", storedBlobs.sum());
+        stats.put("dedupedUploads", dedupedUploads.sum());
+        stats.put("dedupedBytes", dedupedBytes.sum());
+        stats.put("collectedBlobs", collectedBlobs.sum());
+        return stats;
+    }
+
+    // Serialized with release and collection, so a blob is never deleted while a store of it is landing
+    private synchronized String commit(Path source, String hash, String format) throws IOException {
+        Path target = pathFor(hash);
+
+        // Counted before the move: a crash in between leaks a blob rather than losing one
+        BlobMetadata metadata = metadata(hash);
+        if (metadata == null) {
+            metadata = new BlobMetadata();
+            metadata.setCreatedAt(System.currentTimeMillis());
+        }
+        if (metadata.getFormat() == null && format != null) {
+            metadata.setFormat(format);
+            metadata.setContentType(AudioMetadataService.contentTypeFor(format));
+        }
+        metadata.setReferences(metadata.getReferences() + 1);
+        Files.createDirectories(target.getParent());
+        saveMetadata(hash, metadata);
+
+        if (Files.exists(target)) {
+            dedupedUploads.increment();
+            dedupedBytes.add(Files.size(source));
+            return hash;
+        }
+
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+        storedBlobs.increment();
+        return hash;
+    }
+
+    private synchronized boolean collectIfUnreferenced(String hash) throws IOException {
+        BlobMetadata metadata = metadata(hash);
+        boolean blobExists = Files.exists(pathFor(hash));
+        if (blobExists && metadata != null && metadata.getReferences() > 0) return false;
+        if (blobExists && referenceCount(hash) > 0) return false;
+        return deleteBlob(hash);
+    }
+
+    private boolean deleteBlob(String hash) throws IOException {
+        boolean deleted = Files.deleteIfExists(pathFor(hash));
+        Files.deleteIfExists(metadataPath(hash));
+        synchronized (metadataCache) {
+            metadataCache.remove(hash);
+        }
+        return deleted;
+    }
+
+    private BlobMetadata metadata(String hash) {
+        synchronized (metadataCache) {
+            BlobMetadata cached = metadataCache.get(hash);
+            if (cached != null) return cached;
+        }
+        Path file = metadataPath(hash);
+        if (!Files.exists(file)) return null;
+        try {
+            BlobMetadata metadata = objectMapper.readValue(file.toFile(), BlobMetadata.class);
+            synchronized (metadataCache) {
+                metadataCache.put(hash, metadata);
+            }
+            return metadata;
+        } catch (IOException e) {
+            System.err.println("Error reading blob metadata " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Written aside and moved into place, like upload sessions
+    private void saveMetadata(String hash, BlobMetadata metadata) throws IOException {
+        Path file = metadataPath(hash);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean saved = false;
+        try {
+            objectMapper.writeValue(temp.toFile(), metadata);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saved = true;
+        } finally {
+            // On failure the next read goes back to what is on disk
+            synchronized (metadataCache) {
+                if (saved) {
+                    metadataCache.put(hash, metadata);
+                } else {
+                    metadataCache.remove(hash);
+                }
+            }
+        }
+    }
+
+    private Path metadataPath(String hash) {
+        return pathFor(hash).resolveSibling(hash + METADATA_SUFFIX);
+    }
+
+    private int deleteStaleTempFiles() {
+        Path tempDir = root().resolve("tmp");
+        if (!Files.isDirectory(tempDir)) return 0;
+        long cutoff = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDir, "*.part")) {
+            for (Path file : stream) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error cleaning blob temp files: " + e.getMessage());
+        }
+        return deleted;
+    }
+
+    private Path newTempFile() throws IOException {
+        Path tempDir = root().resolve("tmp");
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(UUID.randomUUID() + ".part");
+    }
+
+    private Path root() {
+        return Paths.get(blobDir).toAbsolutePath().normalize();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
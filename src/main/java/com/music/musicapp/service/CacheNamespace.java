@@ -0,0 +1,79 @@
+package com.music.musicapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Kinds of CacheService keys; each owns a key prefix, so a namespace or any narrower prefix can be invalidated alone
+public enum CacheNamespace {
+    MUSIC_SEARCH("music_search_", true),
+    PODCAST_SEARCH("podcast_search_", true),
+    PODCAST_EPISODES("podcast_episodes_", true),
+    TRENDING("trending_", true),
+    // Metadata of tracks saved for offline; only dropped with the whole cache
+    OFFLINE("offline_", false);
+
+    // Requested limits are rounded up to one of these (then to a multiple of the last)
+    private static final int[] LIMIT_BUCKETS = {10, 20, 50, 100};
+
+    private final String prefix;
+    private final boolean invalidatable;
+
+    CacheNamespace(String prefix, boolean invalidatable) {
+        this.prefix = prefix;
+        this.invalidatable = invalidatable;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    public boolean isInvalidatable() {
+        return invalidatable;
+    }
+
+    // prefix + parts joined with '_', used as given (IDs are case-sensitive)
+    public String key(Object... parts) {
+        StringBuilder key = new StringBuilder(prefix);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) key.append('_');
+            key.append(parts[i]);
+        }
+        return key.toString();
+    }
+
+    // Key for a search: normalized query and the bucketed limit, so "Daft  Punk"/15 and "daft punk"/20 share an entry
+    public String queryKey(String query, int limit) {
+        return key(normalizeQuery(query), bucketLimit(limit));
+    }
+
+    // Namespace of a key, or null for keys outside every namespace
+    public static CacheNamespace of(String key) {
+        for (CacheNamespace namespace : values()) {
+            if (key.startsWith(namespace.prefix)) {
+                return namespace;
+            }
+        }
+        return null;
+    }
+
+    // Trimmed, inner whitespace collapsed, lower case
+    public static String normalizeQuery(String query) {
+        if (query == null) return "";
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Load and cache this many results; callers hand back the first limit with firstResults()
+    public static int bucketLimit(int limit) {
+        for (int bucket : LIMIT_BUCKETS) {
+            if (limit <= bucket) return bucket;
+        }
+        int largest = LIMIT_BUCKETS[LIMIT_BUCKETS.length - 1];
+        return (int) Math.min(Integer.MAX_VALUE, ((long) limit + largest - 1) / largest * largest);
+    }
+
+    public static <T> List<T> firstResults(List<T> results, int limit) {
+        if (results == null || results.size() <= limit) return results;
+        return new ArrayList<>(results.subList(0, Math.max(0, limit)));
+    }
+}
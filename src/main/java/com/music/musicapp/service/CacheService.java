@@ -1,17 +1,82 @@
 package com.music.musicapp.service;
 
+import com.music.musicapp.exception.CacheException;
+import com.music.musicapp.exception.ServiceUnavailableException;
+import com.music.musicapp.exception.ValidationException;
 import com.music.musicapp.model.CacheItem;
+import com.music.musicapp.util.CompactRecordCodec;
+import com.music.musicapp.util.DiskUsageLedger;
+import com.music.musicapp.util.HotKeyLog;
+import com.music.musicapp.util.MappedArena;
+import com.music.musicapp.util.OfflineCatalog;
+import com.music.musicapp.util.RangeDownloader;
+import com.music.musicapp.util.SegmentLog;
+import com.music.musicapp.util.TimerWheel;
+import com.music.musicapp.util.WTinyLfuCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
 import java.nio.file.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 @Service
 public class CacheService {
     
+    // File-backed namespaces (subdirectories) tracked by the disk ledger; cached items live in the log
+    private static final List<String> FILE_NAMESPACES = List.of("audio", "images", "metadata");
+    private static final List<String> EVICTABLE_NAMESPACES = List.of("audio", "images");
+    
+    // Version byte at the start of every encoded item in the cache log
+    private static final byte ITEM_FORMAT = 3;
+    
+    // Payload kinds in an encoded item
+    private static final byte PAYLOAD_OBJECT = 0;
+    private static final byte PAYLOAD_LIST = 1;
+    private static final byte PAYLOAD_COMPACT = 2;
+    
+    // Offline catalog entries are stored in the cache log under this prefix plus the track ID
+    private static final String CATALOG_PREFIX = "offline-catalog:";
+    
+    // Track IDs become file names under cache/audio
+    private static final Pattern TRACK_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,127}");
+    private static final long FINISHED_DOWNLOAD_RETENTION_MS = 3600000;
+    
     @Value("${cache.storage.path:./cache}")
     private String cacheStoragePath;
     
@@ -21,13 +86,223 @@ public class CacheService {
     @Value("${cache.max.size.mb:1024}")
     private int maxCacheSizeMB;
     
-    // In-memory cache for quick access
-    private final Map<String, CacheItem> memoryCache = new ConcurrentHashMap<>();
+    // Keep list payloads in memory as CompactRecordCodec bytes, decoded per read, instead of as maps
+    @Value("${cache.memory.compact-payloads:true}")
+    private boolean compactPayloads;
+    
+    // Off-heap second tier: entries evicted from memory are demoted to a memory-mapped arena file
+    @Value("${cache.l2.enabled:true}")
+    private boolean l2Enabled;
+    
+    @Value("${cache.l2.size-mb:256}")
+    private int l2SizeMB;
+    
+    // Reads of a demoted entry before it is promoted back into memory
+    @Value("${cache.l2.promote-after-hits:2}")
+    private int l2PromoteAfterHits;
+    
+    @Value("${cache.log.segment-size-mb:64}")
+    private int logSegmentSizeMB;
+    
+    // Sealed segments with less than this fraction of live bytes are rewritten
+    @Value("${cache.log.compaction-threshold:0.5}")
+    private double logCompactionThreshold;
+    
+    // How often the disk ledger is checked against the directories for files written behind its back
+    @Value("${cache.ledger.reconcile-interval-ms:3600000}")
+    private long ledgerReconcileIntervalMs;
+    
+    // Upper bound on one getOrLoad() loader run, shared by every caller waiting on it
+    @Value("${cache.load.timeout-ms:15000}")
+    private long loadTimeoutMs;
+    
+    // Background refreshes (stale-while-revalidate and refresh-ahead) run on a small bounded pool
+    @Value("${cache.refresh.threads:4}")
+    private int refreshThreads;
+    
+    @Value("${cache.refresh.queue-size:256}")
+    private int refreshQueueSize;
+    
+    // Keys read this often since their last load are refreshed before they go stale
+    @Value("${cache.refresh-ahead.min-hits:5}")
+    private int refreshAheadMinHits;
+    
+    // ...at this fraction of their TTL
+    @Value("${cache.refresh-ahead.fraction:0.8}")
+    private double refreshAheadFraction;
+    
+    // Backoff of negative entries after an upstream failure: initial, doubling up to the max
+    @Value("${cache.negative.initial-ttl-seconds:5}")
+    private int negativeInitialTtlSeconds;
+    
+    @Value("${cache.negative.max-ttl-seconds:300}")
+    private int negativeMaxTtlSeconds;
+    
+    // Warm-up: a sample of getOrLoad() keys is kept in <cache>/hot-keys.bin and the hottest are
+    // reloaded in the background once the app is ready, one every interval-ms
+    @Value("${cache.warmup.enabled:true}")
+    private boolean warmupEnabled;
+    
+    @Value("${cache.warmup.top-keys:200}")
+    private int warmupTopKeys;
+    
+    @Value("${cache.warmup.sample-rate:4}")
+    private int warmupSampleRate;
+    
+    @Value("${cache.warmup.interval-ms:1100}")
+    private long warmupIntervalMs;
+    
+    // Offline audio downloads: at most max-concurrent run at once, each fetching parallel-chunks ranges
+    @Value("${cache.download.max-concurrent:2}")
+    private int downloadMaxConcurrent;
+    
+    @Value("${cache.download.queue-size:64}")
+    private int downloadQueueSize;
+    
+    @Value("${cache.download.chunk-size-mb:4}")
+    private int downloadChunkSizeMB;
+    
+    @Value("${cache.download.parallel-chunks:4}")
+    private int downloadParallelChunks;
+    
+    @Value("${cache.download.read-timeout-ms:30000}")
+    private int downloadReadTimeoutMs;
+    
+    // Hosts audio may be downloaded from (comma separated, each also matching its subdomains); empty allows none
+    @Value("${cache.download.allowed-hosts:}")
+    private String downloadAllowedHosts;
+    
+    @Value("${cache.download.max-size-mb:200}")
+    private int downloadMaxSizeMB;
+    
+    @Autowired
+    private HotTrackCache hotTrackCache;
+    
+    // In-memory cache for quick access, bounded by estimated heap bytes (CacheItem.size)
+    private final WTinyLfuCache<String, CacheItem> memoryCache;
     private final Map<String, Map<String, Object>> objectCache = new ConcurrentHashMap<>();
     
-    public CacheService() {
+    // Expiry deadlines (timestamp + ttlSeconds + staleTtlSeconds) of memory entries; drained by expireEntries()
+    private final TimerWheel<String> expiryWheel = new TimerWheel<>(System.currentTimeMillis());
+    
+    // Refresh-ahead points of entries loaded with a stale window, and how to reload them
+    private final TimerWheel<String> refreshWheel = new TimerWheel<>(System.currentTimeMillis());
+    private final Map<String, RefreshableLoad> refreshableLoads = new ConcurrentHashMap<>();
+    
+    // Recent load failures by upstream (or key); see admitLoad()
+    private final Map<String, NegativeEntry> negativeEntries = new ConcurrentHashMap<>();
+    
+    // Second tier: entries evicted from memory, serialized into <cache>/l2.arena; queued by the
+    // eviction listener (which runs under the memory cache lock) and written by drainDemotions()
+    private volatile MappedArena l2Arena;
+    private final Queue<Map.Entry<String, CacheItem>> demotions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong l2Promotions = new AtomicLong();
+    private final AtomicLong l2Demotions = new AtomicLong();
+    
+    // Every cached key in any tier, sorted so a key prefix is a range; see invalidatePrefix()
+    private final NavigableSet<String> keyIndex = new ConcurrentSkipListSet<>();
+    
+    // Persistent tier: serialized items in an append-only segment log under <cache>/log
+    private SegmentLog cacheLog;
+    private final AtomicLong logHits = new AtomicLong();
+    private final AtomicLong logMisses = new AtomicLong();
+    
+    // Bytes per file namespace, in access order for size-based eviction
+    private final DiskUsageLedger diskLedger = new DiskUsageLedger();
+    private volatile long ledgerReconciledAt;
+    
+    // One in-flight load per key; concurrent misses wait on the same future
+    private final Map<String, CompletableFuture<List<Map<String, Object>>>> inFlightLoads = new ConcurrentHashMap<>();
+    private final ExecutorService loaderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private ThreadPoolExecutor refreshExecutor;
+    
+    // Sampled getOrLoad() keys, and how to reload them by namespace (see registerWarmer())
+    private HotKeyLog hotKeys;
+    private final Map<CacheNamespace, Consumer<String>> warmers = new ConcurrentHashMap<>();
+    private volatile Thread warmupThread;
+    private volatile String warmupState = "idle";
+    private final AtomicInteger warmedKeys = new AtomicInteger();
+    private final AtomicInteger warmupSkipped = new AtomicInteger();
+    
+    // Tracks saved for offline and whether their audio is on disk; persisted in the cache log
+    private final OfflineCatalog offlineCatalog = new OfflineCatalog();
+    
+    // Offline downloads by track ID, kept for a while after they finish so progress can be polled
+    private final Map<String, OfflineDownload> downloads = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor downloadExecutor;
+    private RangeDownloader audioDownloader;
+    
+    public CacheService(@Value("${cache.memory.max-size-mb:64}") long memoryMaxSizeMB) {
+        // Sketch sized for ~2 KB average items; it only needs to be roughly right
+        long memoryMaxBytes = memoryMaxSizeMB * 1024L * 1024L;
+        this.memoryCache = new WTinyLfuCache<>(memoryMaxBytes, (int) Math.min(1 << 20, memoryMaxBytes / 2048));
+        this.memoryCache.setEvictionListener((key, item) -> {
+            forgetTimers(key);
+            demotions.add(Map.entry(key, item));
+        });
+    }
+    
+    // Runs after @Value injection; the storage path is not known in the constructor
+    @PostConstruct
+    public void initialize() {
+        // Bounded pool, but of virtual threads: interrupting one closes a blocked upstream socket,
+        // which is how startLoad() stops a load that ran past cache.load.timeout-ms
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(refreshQueueSize), Thread.ofVirtual().name("cache-refresh-", 1).factory());
+        refreshExecutor.allowCoreThreadTimeOut(true);
+        
+        AtomicInteger downloadThreadCount = new AtomicInteger();
+        downloadExecutor = new ThreadPoolExecutor(downloadMaxConcurrent, downloadMaxConcurrent, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(downloadQueueSize), runnable -> {
+                Thread thread = new Thread(runnable, "cache-download-" + downloadThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        downloadExecutor.allowCoreThreadTimeOut(true);
+        
+        // Own client: long reads, and no JSON Accept header from the shared RestTemplate
+        SimpleClientHttpRequestFactory downloadRequestFactory = RangeDownloader.noRedirects();
+        downloadRequestFactory.setConnectTimeout(10000);
+        downloadRequestFactory.setReadTimeout(downloadReadTimeoutMs);
+        RestTemplate downloadTemplate = new RestTemplate(downloadRequestFactory);
+        downloadTemplate.getInterceptors().add((request, body, execution) -> {
+            request.getHeaders().set("User-Agent", "MusicApp/1.0 (contact@musichub.com)");
+            return execution.execute(request, body);
+        });
+        audioDownloader = new RangeDownloader(downloadTemplate, loaderExecutor,
+            downloadChunkSizeMB * 1024L * 1024L, downloadParallelChunks,
+            downloadMaxSizeMB * 1024L * 1024L, this::checkDownloadUri);
+        
+        hotKeys = new HotKeyLog(warmupSampleRate, warmupTopKeys);
+        
         initializeCacheDirectory();
         loadPersistentCache();
+        loadHotKeys();
+        reconcileLedger();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        Thread warmup = warmupThread;
+        if (warmup != null) {
+            warmup.interrupt();
+        }
+        saveHotKeys();
+        loaderExecutor.shutdownNow();
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+        }
+        try {
+            if (cacheLog != null) {
+                cacheLog.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing cache log: " + e.getMessage());
+        }
+        closeL2Arena();
     }
     
     // Initialize cache directory
@@ -51,25 +326,218 @@ public class CacheService {
         }
     }
     
-    // Load persistent cache from disk
+    // Open the cache log; replaying it rebuilds the key index, payloads are read on first use
     private void loadPersistentCache() {
         if (!cacheEnabled) return;
         
         try {
-            Path cacheFile = Paths.get(cacheStoragePath, "cache_index.json");
-            if (Files.exists(cacheFile)) {
-                String content = Files.readString(cacheFile);
-                // Parse JSON and load into memory cache
-                // Simplified for demo
-                System.out.println("Loaded persistent cache index");
+            long started = System.currentTimeMillis();
+            cacheLog = new SegmentLog(Paths.get(cacheStoragePath, "log"), logSegmentSizeMB * 1024L * 1024L);
+            System.out.println("Loaded persistent cache index: " + cacheLog.size() + " entries in "
+                + (System.currentTimeMillis() - started) + " ms");
+            for (String key : cacheLog.keys()) {
+                if (!key.startsWith(CATALOG_PREFIX)) {
+                    keyIndex.add(key);
+                }
+            }
+            loadOfflineCatalog();
+            openL2Arena();
+            
+            // Earlier versions wrote one metadata-only file per key; nothing in them is recoverable
+            Path legacyItems = Paths.get(cacheStoragePath, "items");
+            if (Files.exists(legacyItems)) {
+                deleteDirectory(legacyItems);
             }
+            Files.deleteIfExists(Paths.get(cacheStoragePath, "cache_index.json"));
         } catch (Exception e) {
             System.err.println("Error loading persistent cache: " + e.getMessage());
         }
     }
     
+    private void loadHotKeys() {
+        if (!cacheEnabled || !warmupEnabled) return;
+        
+        Path file = Paths.get(cacheStoragePath, "hot-keys.bin");
+        try {
+            if (Files.exists(file) && hotKeys.decode(Files.readAllBytes(file))) {
+                System.out.println("Loaded hot-key log: " + hotKeys.size() + " keys");
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading hot-key log: " + e.getMessage());
+        }
+    }
+    
+    // Snapshot the hot-key log (written aside, then moved over the old one)
+    private void saveHotKeys() {
+        if (!cacheEnabled || !warmupEnabled || hotKeys == null) return;
+        
+        try {
+            Path file = Paths.get(cacheStoragePath, "hot-keys.bin");
+            Path temp = file.resolveSibling("hot-keys.bin.tmp");
+            Files.write(temp, hotKeys.encode());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving hot-key log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Register how to reload a namespace's keys during warm-up. The warmer gets the
+     * key and should make the same call that cached it, so the reload goes through
+     * getOrLoad() with its usual single-flight and upstream backoff.
+     */
+    public void registerWarmer(CacheNamespace namespace, Consumer<String> warmer) {
+        warmers.put(namespace, warmer);
+    }
+    
+    // For keys of the form <prefix><query>_<limit>; the warmer gets the query and limit back
+    public void registerQueryWarmer(CacheNamespace namespace, BiConsumer<String, Integer> warmer) {
+        registerWarmer(namespace, key -> {
+            String rest = key.substring(namespace.prefix().length());
+            int split = rest.lastIndexOf('_');
+            if (split < 0) return;
+            try {
+                warmer.accept(rest.substring(0, split), Integer.parseInt(rest.substring(split + 1)));
+            } catch (NumberFormatException e) {
+                // not a key this warmer wrote
+            }
+        });
+    }
+    
+    // After startup (never from the constructor), reload the hottest recorded keys on a background thread
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!cacheEnabled || !warmupEnabled || hotKeys.size() == 0) return;
+        
+        List<String> keys = hotKeys.top(warmupTopKeys);
+        Thread thread = new Thread(() -> runWarmup(keys), "cache-warmup");
+        thread.setDaemon(true);
+        warmupThread = thread;
+        thread.start();
+    }
+    
+    // One reload per interval so upstream rate limits hold; keys still fresh in some tier cost nothing
+    private void runWarmup(List<String> keys) {
+        long started = System.currentTimeMillis();
+        warmupState = "running";
+        try {
+            for (String key : keys) {
+                CacheNamespace namespace = CacheNamespace.of(key);
+                Consumer<String> warmer = namespace != null ? warmers.get(namespace) : null;
+                if (warmer == null || isFresh(key)) {
+                    warmupSkipped.incrementAndGet();
+                    continue;
+                }
+                try {
+                    warmer.accept(key);
+                    warmedKeys.incrementAndGet();
+                } catch (Exception e) {
+                    System.err.println("Error warming cache key " + key + ": " + e.getMessage());
+                }
+                Thread.sleep(warmupIntervalMs);
+            }
+            warmupState = "done";
+            System.out.println("Cache warm-up reloaded " + warmedKeys.get() + " of " + keys.size() + " hot keys in "
+                + (System.currentTimeMillis() - started) / 1000 + " s");
+        } catch (InterruptedException e) {
+            warmupState = "interrupted";
+            Thread.currentThread().interrupt();
+        } finally {
+            warmupThread = null;
+        }
+    }
+    
+    private boolean isFresh(String key) {
+        try {
+            CacheItem cacheItem = lookup(key);
+            return cacheItem != null && !isExpired(cacheItem) && !isStale(cacheItem);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    // Map the L2 arena, keeping what an earlier run left in it (a resized arena starts empty)
+    private void openL2Arena() {
+        if (!l2Enabled) return;
+        
+        try {
+            l2Arena = new MappedArena(Paths.get(cacheStoragePath, "l2.arena"), l2SizeMB * 1024L * 1024L);
+            System.out.println("Opened L2 cache arena: " + l2SizeMB + " MB");
+        } catch (Exception e) {
+            System.err.println("Error opening L2 cache arena, continuing without it: " + e.getMessage());
+            l2Arena = null;
+        }
+    }
+    
+    private void closeL2Arena() {
+        MappedArena arena = l2Arena;
+        l2Arena = null;
+        demotions.clear();
+        if (arena == null) return;
+        try {
+            arena.close();
+        } catch (IOException e) {
+            System.err.println("Error closing L2 cache arena: " + e.getMessage());
+        }
+    }
+    
+    // Restore the offline catalog from the log; the first start after an upgrade builds it from what is on disk
+    private void loadOfflineCatalog() throws IOException {
+        offlineCatalog.setListener(this::persistCatalogEntry);
+        List<String> legacyKeys = new ArrayList<>();
+        for (String key : cacheLog.keys()) {
+            if (key.startsWith(CATALOG_PREFIX)) {
+                byte[] encoded = cacheLog.get(key);
+                OfflineCatalog.Entry entry = encoded != null
+                    ? OfflineCatalog.decode(key.substring(CATALOG_PREFIX.length()), encoded) : null;
+                if (entry != null) {
+                    offlineCatalog.load(entry);
+                }
+            } else if (key.startsWith(CacheNamespace.OFFLINE.prefix())) {
+                legacyKeys.add(key.substring(CacheNamespace.OFFLINE.prefix().length()));
+            }
+        }
+        
+        if (offlineCatalog.size() > 0) {
+            System.out.println("Loaded offline catalog: " + offlineCatalog.size() + " tracks");
+            return;
+        }
+        
+        legacyKeys.stream().filter(trackId -> TRACK_ID.matcher(trackId).matches()).forEach(offlineCatalog::markSaved);
+        Path audioDir = Paths.get(cacheStoragePath, "audio");
+        if (Files.isDirectory(audioDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(audioDir, "*.mp3")) {
+                for (Path file : stream) {
+                    String fileName = file.getFileName().toString();
+                    offlineCatalog.markAudio(fileName.substring(0, fileName.length() - 4), Files.size(file));
+                }
+            }
+        }
+        if (offlineCatalog.size() > 0) {
+            System.out.println("Built offline catalog from disk: " + offlineCatalog.size() + " tracks");
+        }
+    }
+    
+    private void persistCatalogEntry(String trackId, OfflineCatalog.Entry entry) {
+        if (cacheLog == null) return;
+        try {
+            if (entry != null) {
+                cacheLog.put(CATALOG_PREFIX + trackId, OfflineCatalog.encode(entry));
+            } else {
+                cacheLog.delete(CATALOG_PREFIX + trackId);
+            }
+        } catch (IOException e) {
+            System.err.println("Error persisting offline catalog entry " + trackId + ": " + e.getMessage());
+        }
+    }
+    
     // Save to cache
     public void saveToCache(String key, List<Map<String, Object>> data, int ttlSeconds) {
+        saveToCache(key, data, ttlSeconds, 0);
+    }
+    
+    // Save to cache; for staleTtlSeconds after ttlSeconds the entry is still served, but marked for refresh
+    public void saveToCache(String key, List<Map<String, Object>> data, int ttlSeconds, int staleTtlSeconds) {
         if (!cacheEnabled) return;
         
         try {
@@ -78,16 +546,19 @@ public class CacheService {
             cacheItem.setData(data);
             cacheItem.setTimestamp(LocalDateTime.now());
             cacheItem.setTtlSeconds(ttlSeconds);
+            cacheItem.setStaleTtlSeconds(staleTtlSeconds);
+            pack(cacheItem);
             
-            // Store in memory
-            memoryCache.put(key, cacheItem);
+            // Store in memory; an older demoted copy is superseded
+            keyIndex.add(key);
+            removeFromL2(key);
+            memoryCache.put(key, cacheItem, cacheItem.getSize());
+            scheduleExpiry(key, cacheItem);
+            drainDemotions();
             
             // Also persist to disk
             persistCacheItem(key, cacheItem);
             
-            // Clean up old cache if needed
-            cleanupCache();
-            
         } catch (Exception e) {
             System.err.println("Error saving to cache: " + e.getMessage());
         }
@@ -103,9 +574,14 @@ public class CacheService {
         cacheItem.setObjectData(data);
         cacheItem.setTimestamp(LocalDateTime.now());
         cacheItem.setTtlSeconds(ttlSeconds);
+        cacheItem.setSize(estimateSize(key) + estimateSize(data));
         
-        // Store in memory
-        memoryCache.put(key, cacheItem);
+        // Store in memory; an older demoted copy is superseded
+        keyIndex.add(key);
+        removeFromL2(key);
+        memoryCache.put(key, cacheItem, cacheItem.getSize());
+        scheduleExpiry(key, cacheItem);
+        drainDemotions();
         
         // Also persist to disk
         persistCacheItem(key, cacheItem);
@@ -123,12 +599,12 @@ public class CacheService {
         if (!cacheEnabled) return null;
         
         try {
-            CacheItem cacheItem = memoryCache.get(key);
+            CacheItem cacheItem = lookup(key);
             if (cacheItem != null && !isExpired(cacheItem)) {
-                return cacheItem.getData();
+                return payload(cacheItem);
             } else {
                 // Remove expired item
-                memoryCache.remove(key);
+                removeExpired(key, cacheItem);
                 return null;
             }
         } catch (Exception e) {
@@ -137,16 +613,268 @@ public class CacheService {
         }
     }
     
+    /**
+     * Cached value for the key, or the loader's result. Concurrent misses on one key
+     * share a single loader run, so a popular query reaches the upstream once. A
+     * non-null result is cached for ttlSeconds (null means "do not cache"). Loader
+     * failures and timeouts are thrown to every waiting caller as CacheException.
+     */
+    public List<Map<String, Object>> getOrLoad(String key, int ttlSeconds,
+                                               Callable<List<Map<String, Object>>> loader) {
+        return getOrLoad(key, ttlSeconds, 0, loader);
+    }
+    
+    /**
+     * As above, with stale-while-revalidate: for staleTtlSeconds after the TTL the old
+     * value is returned at once while one background refresh replaces it, so callers
+     * only block when an entry is missing or past both windows. Entries read at least
+     * cache.refresh-ahead.min-hits times are reloaded before they even go stale.
+     */
+    public List<Map<String, Object>> getOrLoad(String key, int ttlSeconds, int staleTtlSeconds,
+                                               Callable<List<Map<String, Object>>> loader) {
+        return getOrLoad(key, null, ttlSeconds, staleTtlSeconds, loader);
+    }
+    
+    /**
+     * As above, with failures remembered per upstream (or per key when upstream is null,
+     * and always per key for 4xx client errors). After a failure, callers get a
+     * ServiceUnavailableException at once instead of waiting out the upstream's
+     * timeouts; when the backoff elapses a single probe goes through, and each
+     * further failure doubles the backoff.
+     */
+    public List<Map<String, Object>> getOrLoad(String key, String upstream, int ttlSeconds, int staleTtlSeconds,
+                                               Callable<List<Map<String, Object>>> loader) {
+        if (!cacheEnabled) {
+            return callLoader(key, loader);
+        }
+        
+        if (Thread.currentThread() != warmupThread) {
+            hotKeys.record(key);
+        }
+        LoadSpec spec = new LoadSpec(loader, ttlSeconds, staleTtlSeconds, upstream != null ? upstream : key);
+        CacheItem cacheItem = null;
+        try {
+            cacheItem = lookup(key);
+        } catch (Exception e) {
+            System.err.println("Error getting from cache: " + e.getMessage());
+        }
+        if (cacheItem != null && !isExpired(cacheItem)) {
+            if (isStale(cacheItem)) {
+                refreshInBackground(key, spec, true);
+            } else {
+                RefreshableLoad refreshable = refreshableLoads.get(key);
+                if (refreshable != null) {
+                    refreshable.hits.incrementAndGet();
+                }
+            }
+            return payload(cacheItem);
+        }
+        
+        // Join a load already under way; otherwise respect a recorded failure
+        CompletableFuture<List<Map<String, Object>>> load = inFlightLoads.get(key);
+        if (load == null) {
+            List<NegativeEntry> probes = admitLoad(key, spec.failureScope);
+            load = startLoad(key, spec, loaderExecutor, true);
+            if (!probes.isEmpty()) {
+                // A settled probe has replaced or removed these entries; one that recorded nothing
+                // (joined another load, pool rejected it) must not leave the scope probing forever
+                load.whenComplete((result, error) -> probes.forEach(probe -> probe.probing.set(false)));
+            }
+        }
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while loading " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CacheException cacheException) {
+                throw cacheException;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new CacheException("Timed out after " + loadTimeoutMs + " ms loading " + key, cause);
+            }
+            throw new CacheException("Error loading " + key, cause);
+        }
+    }
+    
+    // Throws while a recorded failure for the key or its upstream is backing off; once every scope is due,
+    // claims the probe of each and returns the claimed entries
+    private List<NegativeEntry> admitLoad(String key, String failureScope) {
+        Map<String, NegativeEntry> due = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (String scope : failureScope.equals(key) ? List.of(key) : List.of(key, failureScope)) {
+            NegativeEntry negative = negativeEntries.get(scope);
+            if (negative == null) continue;
+            if (now < negative.retryAt || negative.probing.get()) {
+                throw backingOff(scope, negative, now);
+            }
+            due.put(scope, negative);
+        }
+        
+        // Claim only after every scope admitted the load, giving back what was claimed if another caller won a probe
+        List<NegativeEntry> claimed = new ArrayList<>(due.size());
+        for (Map.Entry<String, NegativeEntry> entry : due.entrySet()) {
+            if (!entry.getValue().probing.compareAndSet(false, true)) {
+                claimed.forEach(probe -> probe.probing.set(false));
+                throw backingOff(entry.getKey(), entry.getValue(), now);
+            }
+            claimed.add(entry.getValue());
+        }
+        return claimed;
+    }
+    
+    private static ServiceUnavailableException backingOff(String scope, NegativeEntry negative, long now) {
+        long retryInSeconds = Math.max(1, (negative.retryAt - now + 999) / 1000);
+        return new ServiceUnavailableException(scope, negative.failures + " consecutive failures ("
+            + negative.failureClass + "), retrying in " + retryInSeconds + " s");
+    }
+    
+    // Remember a failed load; the backoff doubles with every consecutive failure
+    private void recordFailure(String key, String failureScope, Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof CacheException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return; // our own refresh pool was full; says nothing about the upstream
+        }
+        
+        String failureClass = cause.getClass().getSimpleName();
+        String scope = failureScope;
+        if (cause instanceof HttpStatusCodeException httpError) {
+            int status = httpError.getStatusCode().value();
+            failureClass = failureClass + " " + status;
+            if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                scope = key; // the request itself is bad; the upstream is fine for other keys
+            }
+        }
+        
+        String failedScope = scope;
+        String recordedClass = failureClass;
+        NegativeEntry recorded = negativeEntries.compute(scope, (k, previous) -> {
+            int failures = previous == null ? 1 : previous.failures + 1;
+            long backoffMs = Math.min(negativeMaxTtlSeconds * 1000L,
+                negativeInitialTtlSeconds * 1000L << Math.min(failures - 1, 20));
+            backoffMs += ThreadLocalRandom.current().nextLong(backoffMs / 10 + 1); // spread the probes
+            return new NegativeEntry(recordedClass, failures, System.currentTimeMillis() + backoffMs);
+        });
+        System.err.println("Upstream failure for " + failedScope + " (" + recordedClass + "), backing off "
+            + (recorded.retryAt - System.currentTimeMillis()) / 1000 + " s: " + cause.getMessage());
+    }
+    
+    private void recordSuccess(String key, String failureScope) {
+        negativeEntries.remove(key);
+        negativeEntries.remove(failureScope);
+    }
+    
+    private void refreshInBackground(String key, LoadSpec spec, boolean skipIfFresh) {
+        if (isBackingOff(key, spec.failureScope) || inFlightLoads.containsKey(key)) {
+            return; // keep serving the stale value
+        }
+        startLoad(key, spec, refreshExecutor, skipIfFresh)
+            .whenComplete((result, error) -> {
+                if (error != null) {
+                    System.err.println("Background refresh of " + key + " failed: " + error.getMessage());
+                }
+            });
+    }
+    
+    private boolean isBackingOff(String key, String failureScope) {
+        long now = System.currentTimeMillis();
+        NegativeEntry byKey = negativeEntries.get(key);
+        NegativeEntry byScope = negativeEntries.get(failureScope);
+        return (byKey != null && now < byKey.retryAt) || (byScope != null && now < byScope.retryAt);
+    }
+    
+    // Join the key's in-flight load, or start one on the given executor
+    private CompletableFuture<List<Map<String, Object>>> startLoad(String key, LoadSpec spec,
+                                                                   ExecutorService executor, boolean skipIfFresh) {
+        CompletableFuture<List<Map<String, Object>>> created = new CompletableFuture<>();
+        CompletableFuture<List<Map<String, Object>>> existing = inFlightLoads.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        
+        // Whichever comes first, the loader's outcome or the timeout, settles the load; the other is ignored
+        AtomicBoolean settled = new AtomicBoolean();
+        try {
+            Future<?> task = executor.submit(() -> {
+                try {
+                    // A caller that lost the race may already have refreshed the entry
+                    CacheItem current = skipIfFresh ? memoryCache.peek(key) : null;
+                    if (current != null && !isStale(current) && !isExpired(current)) {
+                        settleLoad(key, spec, created, settled, payload(current), null);
+                        return;
+                    }
+                    List<Map<String, Object>> loaded = callLoader(key, spec.loader);
+                    if (loaded != null && !settled.get()) {
+                        saveToCache(key, loaded, spec.ttlSeconds, spec.staleTtlSeconds);
+                        if (spec.staleTtlSeconds > 0 && spec.ttlSeconds > 0) {
+                            refreshableLoads.put(key, new RefreshableLoad(spec));
+                            refreshWheel.schedule(key, System.currentTimeMillis()
+                                + (long) (spec.ttlSeconds * 1000L * refreshAheadFraction));
+                        }
+                    }
+                    settleLoad(key, spec, created, settled, loaded, null);
+                } catch (Throwable error) {
+                    settleLoad(key, spec, created, settled, null, error);
+                }
+            });
+            
+            // On timeout, interrupt the loader as well as failing the callers, so the hung upstream call
+            // is abandoned instead of running on next to the probe the backoff lets through later
+            CompletableFuture.delayedExecutor(loadTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+                if (settleLoad(key, spec, created, settled, null, new TimeoutException("Load of " + key
+                        + " took longer than " + loadTimeoutMs + " ms"))) {
+                    task.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Refresh pool saturated: keep serving the stale value, a later read retries
+            inFlightLoads.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+    
+    // Complete a load once; returns false if it was already settled
+    private boolean settleLoad(String key, LoadSpec spec, CompletableFuture<List<Map<String, Object>>> load,
+                               AtomicBoolean settled, List<Map<String, Object>> result, Throwable error) {
+        if (!settled.compareAndSet(false, true)) {
+            return false;
+        }
+        inFlightLoads.remove(key, load);
+        if (error != null) {
+            recordFailure(key, spec.failureScope, error);
+            load.completeExceptionally(error);
+        } else {
+            recordSuccess(key, spec.failureScope);
+            load.complete(result);
+        }
+        return true;
+    }
+    
+    private static List<Map<String, Object>> callLoader(String key, Callable<List<Map<String, Object>>> loader) {
+        try {
+            return loader.call();
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("Error loading " + key, e);
+        }
+    }
+    
     // Get object from cache
     public Object getObjectFromCache(String key) {
         if (!cacheEnabled) return null;
         
         try {
-            CacheItem cacheItem = memoryCache.get(key);
+            CacheItem cacheItem = lookup(key);
             if (cacheItem != null && !isExpired(cacheItem)) {
                 return cacheItem.getObjectData();
             } else {
-                memoryCache.remove(key);
+                removeExpired(key, cacheItem);
                 return null;
             }
         } catch (Exception e) {
@@ -155,68 +883,385 @@ public class CacheService {
         }
     }
     
+    // Track the entry's deadline (timestamp + ttlSeconds + staleTtlSeconds); entries without a TTL never expire
+    private void scheduleExpiry(String key, CacheItem cacheItem) {
+        if (cacheItem.getTtlSeconds() > 0) {
+            long lifetimeSeconds = (long) cacheItem.getTtlSeconds() + Math.max(0, cacheItem.getStaleTtlSeconds());
+            expiryWheel.schedule(key, toEpochMillis(cacheItem.getTimestamp()) + lifetimeSeconds * 1000L);
+        } else {
+            expiryWheel.cancel(key);
+        }
+    }
+    
+    // The key left memory: its expiry and refresh-ahead timers no longer apply
+    private void forgetTimers(String key) {
+        expiryWheel.cancel(key);
+        refreshWheel.cancel(key);
+        refreshableLoads.remove(key);
+    }
+    
+    // Memory first, then the L2 arena, then the persistent log. Log hits go back into memory;
+    // L2 hits only once read l2PromoteAfterHits times, so one-off reads do not churn memory
+    private CacheItem lookup(String key) throws IOException {
+        CacheItem cacheItem = memoryCache.get(key);
+        if (cacheItem != null) {
+            return cacheItem;
+        }
+        
+        MappedArena arena = l2Arena;
+        MappedArena.Hit hit = arena != null ? arena.get(key) : null;
+        if (hit != null) {
+            cacheItem = decodeItem(key, hit.value());
+            if (cacheItem == null) {
+                arena.remove(key);
+            } else {
+                if (!isExpired(cacheItem) && hit.hits() >= l2PromoteAfterHits) {
+                    arena.remove(key);
+                    promote(key, cacheItem);
+                    l2Promotions.incrementAndGet();
+                }
+                return cacheItem;
+            }
+        }
+        
+        if (cacheLog == null) {
+            return null;
+        }
+        byte[] encoded = cacheLog.get(key);
+        if (encoded == null) {
+            logMisses.incrementAndGet();
+            return null;
+        }
+        logHits.incrementAndGet();
+        cacheItem = decodeItem(key, encoded);
+        if (cacheItem != null && !isExpired(cacheItem)) {
+            promote(key, cacheItem);
+        }
+        return cacheItem;
+    }
+    
+    private void promote(String key, CacheItem cacheItem) {
+        memoryCache.put(key, cacheItem, cacheItem.getSize());
+        scheduleExpiry(key, cacheItem);
+        drainDemotions();
+    }
+    
+    // Write entries evicted from memory into the L2 arena. Runs outside the memory cache lock;
+    // skips entries that expired meanwhile, were put back into memory or were invalidated (no
+    // longer in keyIndex), and objects that cannot be serialized (memory-only, as in the log)
+    private void drainDemotions() {
+        Map.Entry<String, CacheItem> demotion;
+        while ((demotion = demotions.poll()) != null) {
+            MappedArena arena = l2Arena;
+            String key = demotion.getKey();
+            CacheItem cacheItem = demotion.getValue();
+            if (arena == null || isExpired(cacheItem) || memoryCache.peek(key) != null
+                    || !keyIndex.contains(key)) continue;
+            try {
+                if (arena.put(key, encodeItem(cacheItem))) {
+                    l2Demotions.incrementAndGet();
+                }
+                // Invalidated while we were writing: invalidation drops the index entry before the L2 copy,
+                // so either it removed ours or we see the key gone here
+                if (!keyIndex.contains(key)) {
+                    arena.remove(key);
+                }
+            } catch (NotSerializableException e) {
+                // memory-only entry
+            } catch (Exception e) {
+                System.err.println("Error demoting cache item " + key + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void removeFromL2(String key) {
+        MappedArena arena = l2Arena;
+        if (arena != null) {
+            arena.remove(key);
+        }
+    }
+    
+    // Drop an entry found expired, unless it was replaced in the meantime
+    private void removeExpired(String key, CacheItem cacheItem) {
+        if (cacheItem == null) return;
+        if (memoryCache.remove(key, cacheItem) || memoryCache.peek(key) == null) {
+            keyIndex.remove(key);
+            forgetTimers(key);
+            removeFromL2(key);
+            deleteFromLog(key);
+        }
+    }
+    
+    /**
+     * Drop every key in the namespace from all tiers (memory, L2 and the log).
+     * Offline audio and the offline catalog are never touched.
+     */
+    public int invalidate(CacheNamespace namespace) {
+        return invalidatePrefix(namespace.prefix());
+    }
+    
+    /**
+     * Drop every key starting with the prefix, e.g. PODCAST_EPISODES.key(podcastId) + "_"
+     * for all cached episode pages of one podcast. The prefix must lie inside an
+     * invalidatable namespace. Costs time proportional to the matching keys, which are
+     * found as a range of the sorted key index. Returns how many keys were dropped.
+     */
+    public int invalidatePrefix(String prefix) {
+        CacheNamespace namespace = prefix != null ? CacheNamespace.of(prefix) : null;
+        if (namespace == null || !namespace.isInvalidatable()) {
+            throw new ValidationException("Not an invalidatable cache key prefix: " + prefix);
+        }
+        if (!cacheEnabled) return 0;
+        
+        List<String> keys = new ArrayList<>(keyIndex.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
+        for (String key : keys) {
+            keyIndex.remove(key);
+            memoryCache.remove(key);
+            forgetTimers(key);
+            negativeEntries.remove(key);
+            removeFromL2(key);
+            deleteFromLog(key);
+        }
+        // Evicted but not yet demoted; drainDemotions() would write the old values into L2
+        demotions.removeIf(demotion -> demotion.getKey().startsWith(prefix));
+        if (!keys.isEmpty()) {
+            System.out.println("Invalidated " + keys.size() + " cache keys with prefix " + prefix);
+        }
+        return keys.size();
+    }
+    
+    private void deleteFromLog(String key) {
+        if (cacheLog == null) return;
+        try {
+            cacheLog.delete(key);
+        } catch (IOException e) {
+            System.err.println("Error deleting cache log entry: " + e.getMessage());
+        }
+    }
+    
+    // Evict memory entries whose deadline has passed; only the due wheel buckets are visited
+    @Scheduled(fixedDelay = 1000)
+    public void expireEntries() {
+        long now = System.currentTimeMillis();
+        expiryWheel.advance(now, key -> {
+            CacheItem cacheItem = memoryCache.peek(key);
+            if (cacheItem != null && isExpired(cacheItem) && memoryCache.remove(key, cacheItem)) {
+                refreshWheel.cancel(key);
+                refreshableLoads.remove(key);
+            }
+        });
+        drainDemotions();
+        
+        // Refresh-ahead: reload entries that are still being read before they go stale
+        refreshWheel.advance(now, key -> {
+            RefreshableLoad refreshable = refreshableLoads.get(key);
+            if (refreshable != null && refreshable.hits.get() >= refreshAheadMinHits) {
+                refreshInBackground(key, refreshable.spec, false);
+            }
+        });
+    }
+    
     // Check if cache item is expired
     private boolean isExpired(CacheItem cacheItem) {
         if (cacheItem.getTtlSeconds() <= 0) return false; // Never expires
         
         LocalDateTime expirationTime = cacheItem.getTimestamp()
-            .plusSeconds(cacheItem.getTtlSeconds());
+            .plusSeconds(cacheItem.getTtlSeconds() + Math.max(0, cacheItem.getStaleTtlSeconds()));
         return LocalDateTime.now().isAfter(expirationTime);
     }
     
-    // Persist cache item to disk
+    // Past its TTL but inside the stale window: still served, due for a refresh
+    private boolean isStale(CacheItem cacheItem) {
+        if (cacheItem.getTtlSeconds() <= 0) return false;
+        
+        return LocalDateTime.now().isAfter(cacheItem.getTimestamp().plusSeconds(cacheItem.getTtlSeconds()));
+    }
+    
+    // Rough retained heap size of a cached value (strings, boxed numbers, maps and lists)
+    static long estimateSize(Object value) {
+        return estimateSize(value, 0);
+    }
+    
+    private static long estimateSize(Object value, int depth) {
+        if (value == null) return 0;
+        if (depth > 8) return 64; // deep graphs are rare here; don't walk them
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + estimateSize(entry.getKey(), depth + 1) + estimateSize(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40;
+            for (Object element : collection) {
+                size += 8 + estimateSize(element, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        return 64; // unknown object: assume a small bean
+    }
+    
+    // Persist cache item to disk (one append to the cache log)
     private void persistCacheItem(String key, CacheItem cacheItem) {
-        if (!cacheEnabled) return;
+        if (!cacheEnabled || cacheLog == null) return;
         
         try {
-            // Serialize and save to file
-            Path cacheFile = Paths.get(cacheStoragePath, "items", key + ".cache");
-            Files.createDirectories(cacheFile.getParent());
-            
-            // Simplified serialization (in production, use JSON or binary)
-            String serialized = key + "|" + cacheItem.getTimestamp() + "|" + 
-                              cacheItem.getTtlSeconds();
-            Files.writeString(cacheFile, serialized);
-            
+            cacheLog.put(key, encodeItem(cacheItem));
+        } catch (NotSerializableException e) {
+            // Memory-only entry; make sure an older persisted value is not resurrected
+            deleteFromLog(key);
         } catch (Exception e) {
             System.err.println("Error persisting cache item: " + e.getMessage());
         }
     }
     
-    // Cleanup old cache
-    private void cleanupCache() {
+    // List payload of an item, unpacking it if the memory tier holds it compact
+    private static List<Map<String, Object>> payload(CacheItem cacheItem) {
+        if (cacheItem.getPackedData() != null) {
+            return CompactRecordCodec.decode(cacheItem.getPackedData());
+        }
+        return cacheItem.getData();
+    }
+    
+    // Switch a list item to its packed form when enabled and the payload allows it, and size it
+    private void pack(CacheItem cacheItem) {
+        String key = cacheItem.getKey();
+        if (compactPayloads && cacheItem.getData() != null) {
+            try {
+                cacheItem.setPackedData(CompactRecordCodec.encode(cacheItem.getData()));
+                cacheItem.setData(null);
+            } catch (IllegalArgumentException e) {
+                // Value types the codec does not know; keep the maps
+            }
+        }
+        Object payload = cacheItem.getPackedData() != null ? cacheItem.getPackedData() : cacheItem.getData();
+        cacheItem.setSize(estimateSize(key) + estimateSize(payload));
+    }
+    
+    // Log record value: format, timestamp, ttl, stale ttl, payload kind, then the payload
+    // (CompactRecordCodec bytes for lists it can encode, Java serialization otherwise)
+    private static byte[] encodeItem(CacheItem cacheItem) throws IOException {
+        byte[] packed = cacheItem.getPackedData();
+        if (packed == null && cacheItem.getData() != null) {
+            try {
+                packed = CompactRecordCodec.encode(cacheItem.getData());
+            } catch (IllegalArgumentException e) {
+                // falls back to Java serialization below
+            }
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(packed != null ? packed.length + 32 : 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ITEM_FORMAT);
+            out.writeLong(toEpochMillis(cacheItem.getTimestamp()));
+            out.writeInt(cacheItem.getTtlSeconds());
+            out.writeInt(cacheItem.getStaleTtlSeconds());
+            if (packed != null) {
+                out.writeByte(PAYLOAD_COMPACT);
+                out.write(packed);
+            } else {
+                boolean list = cacheItem.getData() != null;
+                out.writeByte(list ? PAYLOAD_LIST : PAYLOAD_OBJECT);
+                try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                    objects.writeObject(list ? cacheItem.getData() : cacheItem.getObjectData());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private CacheItem decodeItem(String key, byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readByte() != ITEM_FORMAT) {
+                return null; // written by an older version; treated as a miss
+            }
+            CacheItem cacheItem = new CacheItem();
+            cacheItem.setKey(key);
+            cacheItem.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneId.systemDefault()));
+            cacheItem.setTtlSeconds(in.readInt());
+            cacheItem.setStaleTtlSeconds(in.readInt());
+            byte kind = in.readByte();
+            if (kind == PAYLOAD_COMPACT) {
+                byte[] packed = in.readAllBytes();
+                if (compactPayloads) {
+                    cacheItem.setPackedData(packed);
+                } else {
+                    cacheItem.setData(CompactRecordCodec.decode(packed));
+                }
+                pack(cacheItem);
+                return cacheItem;
+            }
+            try (ObjectInputStream objects = new ObjectInputStream(in)) {
+                Object payload = objects.readObject();
+                if (kind == PAYLOAD_LIST) {
+                    cacheItem.setData((List<Map<String, Object>>) payload);
+                } else {
+                    cacheItem.setObjectData(payload);
+                }
+                cacheItem.setSize(estimateSize(key) + estimateSize(payload));
+            }
+            return cacheItem;
+        } catch (Exception e) {
+            System.err.println("Error decoding cached item " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    // Cleanup old disk cache; memory expiry is handled by expireEntries()
+    @Scheduled(fixedDelayString = "${cache.disk.cleanup-interval-ms:600000}")
+    public void cleanupCache() {
         if (!cacheEnabled) return;
         
         try {
-            long currentTime = System.currentTimeMillis();
-            long maxAge = 7 * 24 * 60 * 60 * 1000L; // 7 days
-            
-            // Clean memory cache
-            Iterator<Map.Entry<String, CacheItem>> iterator = memoryCache.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<String, CacheItem> entry = iterator.next();
-                CacheItem item = entry.getValue();
-                
-                if (isExpired(item)) {
-                    iterator.remove();
+            // Compact the cache log, dropping expired and undecodable entries
+            if (cacheLog != null) {
+                int compacted = cacheLog.compact(logCompactionThreshold, (key, encoded) -> {
+                    if (key.startsWith(CATALOG_PREFIX)) return true;
+                    CacheItem cacheItem = decodeItem(key, encoded);
+                    if (cacheItem != null && !isExpired(cacheItem)) return true;
+                    if (memoryCache.peek(key) == null) {
+                        keyIndex.remove(key);
+                    }
+                    return false;
+                });
+                cacheLog.flush();
+                if (compacted > 0) {
+                    System.out.println("Compacted " + compacted + " cache log segments");
                 }
             }
             
-            // Clean disk cache
-            Path cacheDir = Paths.get(cacheStoragePath, "items");
-            if (Files.exists(cacheDir)) {
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*.cache")) {
-                    for (Path file : stream) {
-                        try {
-                            long fileAge = Files.getLastModifiedTime(file).toMillis();
-                            if (currentTime - fileAge > maxAge) {
-                                Files.delete(file);
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error cleaning cache file: " + e.getMessage());
-                        }
-                    }
-                }
+            MappedArena arena = l2Arena;
+            if (arena != null) {
+                arena.flush();
+            }
+            
+            // Snapshot the hot keys, then age them so the log follows current traffic
+            saveHotKeys();
+            hotKeys.decay();
+            
+            // Forget failures nobody has retried for a while, and downloads finished long ago
+            long now = System.currentTimeMillis();
+            negativeEntries.values().removeIf(negative -> now - negative.retryAt > negativeMaxTtlSeconds * 1000L);
+            downloads.values().removeIf(download -> download.isFinished()
+                && now - download.finishedAt > FINISHED_DOWNLOAD_RETENTION_MS);
+            
+            if (System.currentTimeMillis() - ledgerReconciledAt >= ledgerReconcileIntervalMs) {
+                reconcileLedger();
             }
             
             // Check cache size
@@ -227,6 +1272,20 @@ public class CacheService {
         }
     }
     
+    // Re-read the file namespaces into the ledger (startup, then occasionally from cleanup)
+    private void reconcileLedger() {
+        if (!cacheEnabled) return;
+        
+        for (String namespace : FILE_NAMESPACES) {
+            try {
+                diskLedger.reconcile(namespace, Paths.get(cacheStoragePath, namespace));
+            } catch (IOException e) {
+                System.err.println("Error reconciling cache ledger for " + namespace + ": " + e.getMessage());
+            }
+        }
+        ledgerReconciledAt = System.currentTimeMillis();
+    }
+    
     // Check and limit cache size
     private void checkCacheSize() {
         try {
@@ -236,18 +1295,13 @@ public class CacheService {
             if (totalSize > maxSizeBytes) {
                 System.out.println("Cache size limit exceeded. Cleaning up...");
                 
-                // Sort files by last modified (oldest first)
-                List<Path> cacheFiles = getCacheFilesSortedByAge();
-                
-                // Delete oldest files until under limit
-                for (Path file : cacheFiles) {
-                    long fileSize = Files.size(file);
-                    Files.delete(file);
-                    totalSize -= fileSize;
-                    
-                    if (totalSize <= maxSizeBytes * 0.8) { // Target 80% of max
-                        break;
-                    }
+                // Least recently used files first, enough to get back to 80% of max
+                long bytesToFree = totalSize - (long) (maxSizeBytes * 0.8);
+                for (Path file : diskLedger.evictionCandidates(EVICTABLE_NAMESPACES, bytesToFree)) {
+                    if (isActiveDownloadFile(file)) continue;
+                    Files.deleteIfExists(file);
+                    diskLedger.remove(file);
+                    forgetOfflineAudio(file);
                 }
             }
         } catch (Exception e) {
@@ -255,101 +1309,121 @@ public class CacheService {
         }
     }
     
-    // Get total cache size
-    private long getCacheSize() throws IOException {
-        long totalSize = 0;
-        Path cacheDir = Paths.get(cacheStoragePath);
-        
-        if (Files.exists(cacheDir)) {
-            try (var walk = Files.walk(cacheDir)) {
-                totalSize = walk
-                    .filter(Files::isRegularFile)
-                    .mapToLong(p -> {
-                        try {
-                            return Files.size(p);
-                        } catch (IOException e) {
-                            return 0;
-                        }
-                    })
-                    .sum();
-            }
-        }
-        
-        return totalSize;
+    // Get total cache size (ledger, the cache log and the L2 arena)
+    private long getCacheSize() {
+        MappedArena arena = l2Arena;
+        return diskLedger.totalBytes() + (cacheLog != null ? cacheLog.diskSize() : 0)
+            + (arena != null ? arena.fileSize() : 0);
     }
     
-    // Get cache files sorted by age (oldest first)
-    private List<Path> getCacheFilesSortedByAge() throws IOException {
-        List<Path> files = new ArrayList<>();
-        Path cacheDir = Paths.get(cacheStoragePath);
+    /**
+     * Queue a background download of a track's audio into cache/audio. Downloads
+     * run cache.download.max-concurrent at a time; asking again for a track that is
+     * already downloading joins that download. The future completes with the path
+     * of the committed file, and getDownloadProgress() reports how far it got.
+     */
+    public CompletableFuture<String> downloadAndCacheAudio(String trackId, String audioUrl) {
+        if (!cacheEnabled) {
+            return CompletableFuture.failedFuture(new CacheException("Cache is disabled"));
+        }
         
-        if (Files.exists(cacheDir)) {
-            try (var walk = Files.walk(cacheDir)) {
-                files = walk
-                    .filter(Files::isRegularFile)
-                    .filter(p -> p.toString().endsWith(".cache") || 
-                               p.toString().endsWith(".mp3") || 
-                               p.toString().endsWith(".jpg"))
-                    .sorted(Comparator.comparing(p -> {
-                        try {
-                            return Files.getLastModifiedTime(p).toMillis();
-                        } catch (IOException e) {
-                            return 0L;
-                        }
-                    }))
-                    .collect(Collectors.toList());
-            }
+        Path audioFile = offlineAudioFile(trackId);
+        validateDownloadUrl(audioUrl);
+        
+        // Check if already cached
+        String cachedPath = getOfflineAudioPath(trackId);
+        if (cachedPath != null) {
+            return CompletableFuture.completedFuture(cachedPath);
         }
         
-        return files;
+        OfflineDownload created = new OfflineDownload(audioFile);
+        OfflineDownload download = downloads.compute(trackId,
+            (id, current) -> current != null && !current.isFinished() ? current : created);
+        if (download != created) {
+            return download.result;
+        }
+        
+        try {
+            downloadExecutor.execute(() -> runDownload(trackId, audioUrl, created));
+        } catch (RejectedExecutionException e) {
+            created.fail(new ServiceUnavailableException("Offline download queue is full"));
+        }
+        return created.result;
     }
     
-    // Download and cache audio file
-    public void downloadAndCacheAudio(String trackId, String audioUrl) {
-        if (!cacheEnabled) return;
-        
+    private void runDownload(String trackId, String audioUrl, OfflineDownload download) {
+        download.state = "downloading";
+        Path audioFile = download.audioFile;
         try {
-            Path audioFile = Paths.get(cacheStoragePath, "audio", trackId + ".mp3");
-            
-            // Check if already cached
-            if (Files.exists(audioFile)) {
-                System.out.println("Audio already cached: " + trackId);
-                return;
-            }
-            
             System.out.println("Downloading audio for offline caching: " + trackId);
-            
-            // In production, download the file
-            // For demo, create a placeholder file
             Files.createDirectories(audioFile.getParent());
-            String placeholder = "Offline audio placeholder for: " + trackId;
-            Files.writeString(audioFile, placeholder);
+            RangeDownloader.Result result = audioDownloader.download(audioUrl, audioFile, null, download.progress);
+            
+            diskLedger.remove(audioFile.resolveSibling(audioFile.getFileName() + ".part"));
+            diskLedger.remove(audioFile.resolveSibling(audioFile.getFileName() + ".part.state"));
+            diskLedger.record("audio", audioFile, result.size());
+            offlineCatalog.markAudio(trackId, result.size());
             
-            // Store metadata
+            // Store metadata, keeping what /offline/save recorded about the track
             Map<String, Object> metadata = new HashMap<>();
+            if (getObjectFromCache(CacheNamespace.OFFLINE.key(trackId)) instanceof Map<?, ?> saved) {
+                saved.forEach((name, value) -> metadata.put(String.valueOf(name), value));
+            }
             metadata.put("trackId", trackId);
             metadata.put("audioUrl", audioUrl);
             metadata.put("cachedAt", LocalDateTime.now().toString());
             metadata.put("filePath", audioFile.toString());
+            metadata.put("size", result.size());
+            metadata.put("sha256", result.sha256());
+            saveObjectToCache(CacheNamespace.OFFLINE.key(trackId), metadata, 2592000); // 30 days
             
-            saveObjectToCache("offline_" + trackId, metadata, 2592000); // 30 days
-            
-            System.out.println("Audio cached for offline: " + trackId);
+            download.state = "complete";
+            download.finishedAt = System.currentTimeMillis();
+            download.result.complete(audioFile.toAbsolutePath().toString());
+            System.out.println("Audio cached for offline: " + trackId + " (" + result.size() + " bytes)");
             
         } catch (Exception e) {
-            System.err.println("Error caching audio: " + e.getMessage());
+            // The partial file stays behind, so the next attempt resumes it
+            System.err.println("Error caching audio for " + trackId + ": " + e.getMessage());
+            download.fail(e);
+        }
+    }
+    
+    // State of a track's offline download: queued, downloading, complete, failed or none
+    public Map<String, Object> getDownloadProgress(String trackId) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("trackId", trackId);
+        
+        OfflineDownload download = downloads.get(trackId);
+        if (download == null) {
+            progress.put("state", getOfflineAudioPath(trackId) != null ? "complete" : "none");
+            return progress;
+        }
+        
+        long totalBytes = download.progress.getTotalBytes();
+        long receivedBytes = download.progress.getReceivedBytes();
+        progress.put("state", download.state);
+        progress.put("receivedBytes", receivedBytes);
+        progress.put("totalBytes", totalBytes);
+        progress.put("percent", totalBytes > 0 ? Math.min(100.0, receivedBytes * 100.0 / totalBytes) : null);
+        if (download.error != null) {
+            progress.put("error", download.error);
         }
+        return progress;
     }
     
-    // Get offline cached audio path
+    // Get offline cached audio path; downloads are renamed into place only once complete and verified
     public String getOfflineAudioPath(String trackId) {
-        if (!cacheEnabled) return null;
+        if (!cacheEnabled || !offlineCatalog.hasAudio(trackId)) return null;
         
         try {
-            Path audioFile = Paths.get(cacheStoragePath, "audio", trackId + ".mp3");
+            Path audioFile = offlineAudioFile(trackId);
             if (Files.exists(audioFile)) {
+                diskLedger.touch(audioFile);
                 return audioFile.toAbsolutePath().toString();
             }
+            // Deleted behind our back
+            offlineCatalog.clearAudio(trackId);
         } catch (Exception e) {
             System.err.println("Error getting offline audio: " + e.getMessage());
         }
@@ -357,38 +1431,111 @@ public class CacheService {
         return null;
     }
     
-    // Get list of offline track IDs
-    public List<String> getOfflineKeys() {
-        List<String> keys = new ArrayList<>();
+    /**
+     * Save a track's details for offline use and add it to the offline catalog.
+     * The audio itself is fetched separately by downloadAndCacheAudio().
+     */
+    public boolean saveForOffline(String trackId, Map<String, Object> trackData) {
+        if (!cacheEnabled) return false;
         
-        if (!cacheEnabled) return keys;
+        offlineAudioFile(trackId); // validates the ID
+        if (!saveObjectToCache(CacheNamespace.OFFLINE.key(trackId), trackData, 2592000)) { // 30 days
+            return false;
+        }
+        offlineCatalog.markSaved(trackId);
+        return true;
+    }
+    
+    // Whether the track's audio is downloaded and committed (catalog lookup, no disk access)
+    public boolean isOfflineCached(String trackId) {
+        return cacheEnabled && offlineCatalog.hasAudio(trackId);
+    }
+    
+    // The audio file was evicted or deleted: the track stays saved, but is no longer playable offline
+    private void forgetOfflineAudio(Path file) {
+        String fileName = file.getFileName().toString();
+        if (file.getParent() != null && file.getParent().getFileName().toString().equals("audio") && fileName.endsWith(".mp3")) {
+            offlineCatalog.clearAudio(fileName.substring(0, fileName.length() - 4));
+        }
+    }
+    
+    private Path offlineAudioFile(String trackId) {
+        if (trackId == null || !TRACK_ID.matcher(trackId).matches()) {
+            throw new ValidationException("Invalid track ID: " + trackId);
+        }
+        return Paths.get(cacheStoragePath, "audio", trackId + ".mp3");
+    }
+    
+    private void validateDownloadUrl(String audioUrl) {
+        URI uri;
+        try {
+            uri = URI.create(audioUrl);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new ValidationException("Invalid audio URL: " + audioUrl);
+        }
+        checkDownloadUri(uri);
+    }
+    
+    // Every URL the downloader requests, redirects included: an allowed host that resolves only to public addresses
+    private void checkDownloadUri(URI uri) {
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")) || host == null) {
+            throw new ValidationException("Audio URL must be an http(s) URL: " + uri);
+        }
+        String normalizedHost = host.toLowerCase(Locale.ROOT);
+        boolean allowed = Arrays.stream(downloadAllowedHosts.split(","))
+            .map(entry -> entry.trim().toLowerCase(Locale.ROOT))
+            .filter(entry -> !entry.isEmpty())
+            .anyMatch(entry -> normalizedHost.equals(entry) || normalizedHost.endsWith("." + entry));
+        if (!allowed) {
+            throw new ValidationException("Downloads from " + host + " are not allowed");
+        }
         
+        InetAddress[] addresses;
         try {
-            // Get from memory cache
-            for (String key : memoryCache.keySet()) {
-                if (key.startsWith("offline_")) {
-                    keys.add(key.substring(8)); // Remove "offline_" prefix
-                }
-            }
-            
-            // Also check disk
-            Path audioDir = Paths.get(cacheStoragePath, "audio");
-            if (Files.exists(audioDir)) {
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(audioDir, "*.mp3")) {
-                    for (Path file : stream) {
-                        String fileName = file.getFileName().toString();
-                        String trackId = fileName.substring(0, fileName.length() - 4);
-                        if (!keys.contains(trackId)) {
-                            keys.add(trackId);
-                        }
-                    }
-                }
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new ValidationException("Unknown audio host: " + host);
+        }
+        for (InetAddress address : addresses) {
+            if (isInternalAddress(address)) {
+                throw new ValidationException("Audio host " + host + " resolves to a non-public address");
             }
-        } catch (Exception e) {
-            System.err.println("Error getting offline keys: " + e.getMessage());
         }
-        
-        return keys;
+    }
+    
+    private static boolean isInternalAddress(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 16) {
+            return (bytes[0] & 0xFE) == 0xFC; // IPv6 unique local, fc00::/7
+        }
+        return (bytes[0] & 0xFF) == 100 && (bytes[1] & 0xC0) == 64; // carrier-grade NAT, 100.64.0.0/10
+    }
+    
+    // Partial files of a running download must not be evicted from under it
+    private boolean isActiveDownloadFile(Path file) {
+        String name = file.getFileName().toString();
+        int part = name.indexOf(".part");
+        if (part < 0) return false;
+        String audioName = name.substring(0, part);
+        return downloads.values().stream()
+            .anyMatch(download -> !download.isFinished() && download.audioFile.getFileName().toString().equals(audioName));
+    }
+    
+    // Get list of offline track IDs
+    public List<String> getOfflineKeys() {
+        return getOfflineKeys(null, Integer.MAX_VALUE);
+    }
+    
+    // One page of offline track IDs in ID order, starting after the given ID (null for the first page)
+    public List<String> getOfflineKeys(String after, int limit) {
+        if (!cacheEnabled) return new ArrayList<>();
+        return offlineCatalog.page(after, limit);
     }
     
     // Clear cache
@@ -398,14 +1545,28 @@ public class CacheService {
         try {
             // Clear memory cache
             memoryCache.clear();
+            expiryWheel.clear();
+            refreshWheel.clear();
+            refreshableLoads.clear();
+            negativeEntries.clear();
             objectCache.clear();
+            hotKeys.clear();
+            keyIndex.clear();
+            downloads.values().removeIf(download -> download.isFinished());
             
-            // Clear disk cache
+            // Clear disk cache; the arena is unmapped first and recreated empty
+            closeL2Arena();
             Path cacheDir = Paths.get(cacheStoragePath);
             if (Files.exists(cacheDir)) {
                 deleteDirectory(cacheDir);
                 Files.createDirectories(cacheDir);
             }
+            openL2Arena();
+            if (cacheLog != null) {
+                cacheLog.clear();
+            }
+            diskLedger.clear();
+            offlineCatalog.clear();
             
             System.out.println("Cache cleared successfully");
             
@@ -442,23 +1603,72 @@ public class CacheService {
         try {
             stats.put("enabled", true);
             stats.put("memoryCacheSize", memoryCache.size());
+            stats.put("memoryCache", memoryCache.getStats());
+            
+            // Hits and misses per tier, in lookup order
+            Map<String, Object> tiers = new LinkedHashMap<>();
+            tiers.put("l1", memoryCache.getStats());
+            MappedArena arena = l2Arena;
+            if (arena != null) {
+                Map<String, Object> l2 = new LinkedHashMap<>(arena.getStats());
+                l2.put("demotions", l2Demotions.get());
+                l2.put("promotions", l2Promotions.get());
+                l2.put("pendingDemotions", demotions.size());
+                tiers.put("l2", l2);
+            }
+            tiers.put("log", Map.of("hits", logHits.get(), "misses", logMisses.get()));
+            stats.put("tiers", tiers);
+            
+            Map<String, Object> keysByNamespace = new LinkedHashMap<>();
+            for (CacheNamespace namespace : CacheNamespace.values()) {
+                String prefix = namespace.prefix();
+                keysByNamespace.put(namespace.name().toLowerCase(),
+                    keyIndex.subSet(prefix, true, prefix + Character.MAX_VALUE, false).size());
+            }
+            stats.put("indexedKeys", keyIndex.size());
+            stats.put("keysByNamespace", keysByNamespace);
+            
+            Map<String, Object> warmup = new LinkedHashMap<>();
+            warmup.put("state", warmupState);
+            warmup.put("trackedKeys", hotKeys.size());
+            warmup.put("reloaded", warmedKeys.get());
+            warmup.put("skipped", warmupSkipped.get());
+            stats.put("warmup", warmup);
+            stats.put("expiryTimers", expiryWheel.size());
+            stats.put("refreshAheadKeys", refreshableLoads.size());
+            stats.put("negativeEntries", negativeEntries.size());
+            if (refreshExecutor != null) {
+                stats.put("refreshQueue", refreshExecutor.getQueue().size());
+            }
+            if (cacheLog != null) {
+                stats.put("persistentEntries", cacheLog.size());
+                stats.put("persistentLogBytes", cacheLog.diskSize());
+            }
             stats.put("objectCacheSize", objectCache.size());
             stats.put("storagePath", cacheStoragePath);
             
             long totalSize = getCacheSize();
             stats.put("totalSizeBytes", totalSize);
             stats.put("totalSizeMB", totalSize / (1024 * 1024));
+            Map<String, Long> namespaceBytes = diskLedger.bytesByNamespace();
+            namespaceBytes.put("items", cacheLog != null ? cacheLog.diskSize() : 0L);
+            stats.put("sizeByNamespaceBytes", namespaceBytes);
             stats.put("maxSizeMB", maxCacheSizeMB);
             
+            // Memory-mapped hot tracks served by the streaming endpoints
+            stats.put("hotTrackCache", hotTrackCache.getStats());
+            
             // Count offline tracks
-            List<String> offlineKeys = getOfflineKeys();
-            stats.put("offlineTrackCount", offlineKeys.size());
+            stats.put("offlineTrackCount", offlineCatalog.size());
+            stats.put("offlineAudioCount", offlineCatalog.audioCount());
+            stats.put("activeDownloads", downloads.values().stream().filter(download -> !download.isFinished()).count());
             
             // Get oldest and newest cache items
-            if (!memoryCache.isEmpty()) {
-                Optional<CacheItem> oldest = memoryCache.values().stream()
+            List<CacheItem> items = memoryCache.values();
+            if (!items.isEmpty()) {
+                Optional<CacheItem> oldest = items.stream()
                     .min(Comparator.comparing(CacheItem::getTimestamp));
-                Optional<CacheItem> newest = memoryCache.values().stream()
+                Optional<CacheItem> newest = items.stream()
                     .max(Comparator.comparing(CacheItem::getTimestamp));
                 
                 oldest.ifPresent(item -> stats.put("oldestCache", item.getTimestamp()));
@@ -471,4 +1681,58 @@ public class CacheService {
         
         return stats;
     }
-}
\ No newline at end of file
+    
+    // How to (re)load one getOrLoad() key
+    private record LoadSpec(Callable<List<Map<String, Object>>> loader, int ttlSeconds, int staleTtlSeconds,
+                            String failureScope) {
+    }
+    
+    // An entry that opted into stale-while-revalidate, and how often it was read since its last load
+    private static final class RefreshableLoad {
+        private final LoadSpec spec;
+        private final AtomicInteger hits = new AtomicInteger();
+        
+        private RefreshableLoad(LoadSpec spec) {
+            this.spec = spec;
+        }
+    }
+    
+    // One offline audio download: its target file, progress and outcome
+    private static final class OfflineDownload {
+        private final Path audioFile;
+        private final RangeDownloader.Progress progress = new RangeDownloader.Progress();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile String state = "queued";
+        private volatile String error;
+        private volatile long finishedAt;
+        
+        private OfflineDownload(Path audioFile) {
+            this.audioFile = audioFile;
+        }
+        
+        private boolean isFinished() {
+            return finishedAt > 0;
+        }
+        
+        private void fail(Exception e) {
+            error = e.getMessage();
+            state = "failed";
+            finishedAt = System.currentTimeMillis();
+            result.completeExceptionally(e);
+        }
+    }
+    
+    // A recent upstream failure; loads fail fast until retryAt, then one probe is admitted
+    private static final class NegativeEntry {
+        private final String failureClass;
+        private final int failures;
+        private final long retryAt;
+        private final AtomicBoolean probing = new AtomicBoolean();
+        
+        private NegativeEntry(String failureClass, int failures, long retryAt) {
+            this.failureClass = failureClass;
+            this.failures = failures;
+            this.retryAt = retryAt;
+        }
+    }
+}
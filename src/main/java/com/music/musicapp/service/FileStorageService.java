@@ -1,5 +1,6 @@
 package com.music.musicapp.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -9,8 +10,6 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
 
 @Service
 public class FileStorageService {
@@ -18,41 +17,72 @@ public class FileStorageService {
     @Value("${file.upload-dir:./uploads}")
     private String uploadDir;
     
-    // Store file and return filename
+    @Value("${music.upload.path:uploads/audio}")
+    private String songAudioDir;
+    
+    @Autowired
+    private HotTrackCache hotTrackCache;
+    
+    @Autowired
+    private HlsSegmenterService hlsSegmenterService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private WaveformService waveformService;
+    
+    @Autowired
+    private UploadIndexService uploadIndexService;
+    
+    // Store file and return its content-addressed name (<sha256>)
     public String storeFile(MultipartFile file) throws IOException {
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = "";
-        
-        if (originalFilename != null && originalFilename.contains(".")) {
-            fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        }
-        
-        String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-        
-        // Create upload directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        
-        // Save file
-        Path filePath = uploadPath.resolve(uniqueFilename);
+        // Identical uploads dedupe to the same blob; the hash is taken while streaming
+        String blobName;
         try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
+            blobName = blobStoreService.store(inputStream, file.getOriginalFilename());
         }
         
-        return uniqueFilename;
+        afterStore(blobName);
+        return blobName;
+    }
+    
+    // Store a file assembled from resumable upload chunks; the checksum is optional
+    public String storeAssembledFile(Path assembledFile, String originalFilename, String expectedSha256) throws IOException {
+        String blobName = blobStoreService.importFile(assembledFile, originalFilename, expectedSha256);
+        afterStore(blobName);
+        return blobName;
     }
     
-    // Get file path
+    // Get file path (blobs live in the hash fan-out, older uploads directly in uploadDir)
     public Path getFilePath(String filename) {
         if (filename == null || filename.isEmpty()) {
             return Paths.get(uploadDir);
         }
+        if (blobStoreService.isBlobName(filename)) {
+            return blobStoreService.pathFor(filename);
+        }
         return Paths.get(uploadDir).resolve(filename);
     }
     
+    // Audio behind a Song.filePath: blobs by hash, older song uploads from the song audio folder
+    public Path getSongAudioPath(String filename) {
+        if (blobStoreService.isBlobName(filename)) {
+            return blobStoreService.pathFor(filename);
+        }
+        Path songDir = Paths.get(songAudioDir).toAbsolutePath().normalize();
+        Path filePath = songDir.resolve(filename).normalize();
+        if (!filePath.startsWith(songDir)) {
+            throw new IllegalArgumentException("Sorry! Filename contains invalid path sequence " + filename);
+        }
+        return filePath;
+    }
+    
+    // Blob names are derived from content, so responses for them can be cached forever
+    public boolean isImmutable(String filename) {
+        return blobStoreService.isBlobName(filename);
+    }
+    
     // Check if file exists
     public boolean fileExists(String filename) {
         try {
@@ -63,16 +93,50 @@ public class FileStorageService {
         }
     }
     
-    // Delete file
+    // Audio format of a stored file (blobs keep it in their metadata, other files in the extension)
+    public String formatOf(String filename) {
+        return blobStoreService.formatOf(filename);
+    }
+    
+    public String contentTypeOf(String filename) {
+        return AudioMetadataService.contentTypeFor(formatOf(filename));
+    }
+    
+    // Delete file (blobs still referenced by a song are kept, shared ones once every upload is deleted)
     public boolean deleteFile(String filename) {
         try {
+            if (blobStoreService.isBlobName(filename)) {
+                if (blobStoreService.referenceCount(filename) > 0) {
+                    return false;
+                }
+                Path filePath = getFilePath(filename);
+                hotTrackCache.invalidate(filePath);
+                boolean released = blobStoreService.release(filename);
+                if (!Files.exists(filePath)) {
+                    uploadIndexService.remove(filename);
+                }
+                return released;
+            }
             Path filePath = getFilePath(filename);
-            return Files.deleteIfExists(filePath);
+            hotTrackCache.invalidate(filePath);
+            boolean deleted = Files.deleteIfExists(filePath);
+            uploadIndexService.remove(filename);
+            return deleted;
         } catch (IOException e) {
             return false;
         }
     }
     
+    // Work that follows every stored upload
+    private void afterStore(String filename) {
+        // Visible to /list immediately, without waiting for a directory scan
+        uploadIndexService.record(filename, getFilePath(filename));
+        // Cut into HLS segments off the request thread
+        hlsSegmenterService.segmentInBackground(getFilePath(filename));
+        // Seek-bar peaks, so players never download the audio just to draw it
+        waveformService.generateInBackground(getFilePath(filename));
+    }
+    
     // Get upload directory
     public String getUploadDir() {
         return uploadDir;
@@ -0,0 +1,330 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.util.Mp3FrameReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Offline HLS segmenter for stored MP3s.
+ *
+ * Each track is cut on MPEG frame boundaries into segments of roughly
+ * hls.segment-seconds and described by a VOD index.m3u8. Output lives in
+ * hls/&lt;filename&gt;/&lt;version&gt;/ where the version is derived from the source's
+ * size and mtime, so a segment URL never changes content and can be cached
+ * forever by browsers and intermediaries.
+ *
+ * Segments are packed audio, so each one starts with an ID3 PRIV frame
+ * carrying the 90 kHz timestamp of its first frame (RFC 8216 section 3.4);
+ * players need it to place the segment on the timeline.
+ */
+@Service
+public class HlsSegmenterService {
+
+    public static final String PLAYLIST_NAME = "index.m3u8";
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment_\\d{5}\\.mp3");
+    private static final Pattern VERSION_NAME = Pattern.compile("[0-9a-f]+-[0-9a-f]+");
+
+    private static final byte[] TIMESTAMP_OWNER =
+        "com.apple.streaming.transportStreamTimestamp\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Value("${hls.output-dir:./uploads/hls}")
+    private String outputDir;
+
+    @Value("${hls.segment-seconds:6}")
+    private int segmentSeconds;
+
+    // Told to players whose playlist is still being segmented
+    @Value("${hls.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
+    @Autowired
+    private MediaJobQueue mediaJobQueue;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    // One segmentation at a time per source file; striped so the locks never need removing
+    private final Object[] locks = new Object[64];
+
+    // Sources with a segmentation job queued or running, so repeated requests queue it once
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    public HlsSegmenterService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Segment after upload without holding up the request
+    public void segmentInBackground(Path source) {
+        if (!isSegmentable(source)) return;
+        Path key = source.toAbsolutePath().normalize();
+        if (!pending.add(key)) return;
+        boolean queued = mediaJobQueue.submit("hls " + source.getFileName(), () -> {
+            try {
+                segment(source);
+            } catch (IOException e) {
+                System.err.println("Error segmenting " + source + ": " + e.getMessage());
+            } finally {
+                pending.remove(key);
+            }
+        });
+        if (!queued) {
+            pending.remove(key);
+        }
+    }
+
+    // Current version if it is ready; otherwise queue the segmentation and return null
+    public String findOrQueueVersion(Path source) throws IOException {
+        String version = findReadyVersion(source);
+        if (version == null) {
+            segmentInBackground(source);
+        }
+        return version;
+    }
+
+    // Build (or reuse) the HLS rendition and return its version directory name
+    public String segment(Path source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String version = versionOf(attributes);
+        Path trackDir = trackDir(source.getFileName().toString());
+        Path versionDir = trackDir.resolve(version);
+
+        if (Files.exists(versionDir.resolve(PLAYLIST_NAME))) {
+            return version;
+        }
+
+        Object lock = locks[Math.floorMod(trackDir.hashCode(), locks.length)];
+        synchronized (lock) {
+            if (Files.exists(versionDir.resolve(PLAYLIST_NAME))) {
+                return version; // another thread finished it while we waited
+            }
+
+            Path workDir = trackDir.resolve(version + ".tmp");
+            deleteRecursively(workDir);
+            Files.createDirectories(workDir);
+
+            writeSegments(source, attributes.size(), version, workDir);
+            publish(workDir, versionDir);
+            removeStaleVersions(trackDir, version);
+
+            System.out.println("HLS rendition ready: " + source.getFileName() + " (" + version + ")");
+            return version;
+        }
+    }
+
+    // Current version for the source if it has already been segmented, else null
+    public String findReadyVersion(Path source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String version = versionOf(attributes);
+        Path playlist = trackDir(source.getFileName().toString()).resolve(version).resolve(PLAYLIST_NAME);
+        return Files.exists(playlist) ? version : null;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Path getPlaylistPath(String filename, String version) {
+        return resolveVersionDir(filename, version).resolve(PLAYLIST_NAME);
+    }
+
+    public Path getSegmentPath(String filename, String version, String segment) {
+        if (!SEGMENT_NAME.matcher(segment).matches()) {
+            throw new IllegalArgumentException("Invalid segment name: " + segment);
+        }
+        return resolveVersionDir(filename, version).resolve(segment);
+    }
+
+    public boolean isSegmentable(Path source) {
+        return "mp3".equals(blobStoreService.formatOf(source));
+    }
+
+    // Cut the file into frame-aligned segments and write the playlist next to them
+    private void writeSegments(Path source, long size, String version, Path workDir) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large to segment: " + source);
+        }
+
+        long targetMicros = segmentSeconds * 1_000_000L;
+        StringBuilder entries = new StringBuilder();
+        long maxSegmentMicros = 0;
+        int segmentIndex = 0;
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            Mp3FrameReader reader = new Mp3FrameReader(buffer);
+
+            long segmentStart = -1;
+            long segmentEnd = 0;
+            long segmentMicros = 0;
+            long startMicros = 0; // presentation time of the current segment's first frame
+
+            while (reader.next()) {
+                if (segmentStart < 0) {
+                    segmentStart = reader.getFrameOffset();
+                }
+                segmentEnd = reader.getFrameOffset() + reader.getFrameLength();
+                segmentMicros += reader.getFrameDurationMicros();
+
+                if (segmentMicros >= targetMicros) {
+                    writeSegment(in, segmentStart, segmentEnd, startMicros, workDir, segmentIndex);
+                    appendEntry(entries, version, segmentIndex++, segmentMicros);
+                    maxSegmentMicros = Math.max(maxSegmentMicros, segmentMicros);
+                    startMicros += segmentMicros;
+                    segmentStart = -1;
+                    segmentMicros = 0;
+                }
+            }
+
+            if (segmentStart >= 0) {
+                writeSegment(in, segmentStart, segmentEnd, startMicros, workDir, segmentIndex);
+                appendEntry(entries, version, segmentIndex++, segmentMicros);
+                maxSegmentMicros = Math.max(maxSegmentMicros, segmentMicros);
+            }
+        }
+
+        if (segmentIndex == 0) {
+            throw new IOException("No MPEG audio frames found in " + source);
+        }
+
+        String playlist = "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:" + (long) Math.ceil(maxSegmentMicros / 1_000_000.0) + "\n"
+            + "#EXT-X-MEDIA-SEQUENCE:0\n"
+            + "#EXT-X-PLAYLIST-TYPE:VOD\n"
+            + "#EXT-X-INDEPENDENT-SEGMENTS\n"
+            + entries
+            + "#EXT-X-ENDLIST\n";
+        Files.writeString(workDir.resolve(PLAYLIST_NAME), playlist, StandardCharsets.UTF_8);
+    }
+
+    private void writeSegment(FileChannel in, long start, long end, long startMicros,
+                              Path workDir, int index) throws IOException {
+        Path segmentFile = workDir.resolve(segmentName(index));
+        try (FileChannel out = FileChannel.open(segmentFile,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer tag = timestampTag(startMicros);
+            while (tag.hasRemaining()) {
+                out.write(tag);
+            }
+            long position = start;
+            while (position < end) {
+                long copied = in.transferTo(position, end - position, out);
+                if (copied <= 0) break;
+                position += copied;
+            }
+        }
+    }
+
+    // ID3v2.4 tag holding one PRIV frame: the owner string, then the 33-bit 90 kHz PTS as 8 big-endian bytes
+    static ByteBuffer timestampTag(long startMicros) {
+        long pts = (startMicros * 9 / 100) & 0x1_FFFF_FFFFL;
+        int frameSize = TIMESTAMP_OWNER.length + Long.BYTES;
+        ByteBuffer tag = ByteBuffer.allocate(10 + 10 + frameSize);
+        tag.put((byte) 'I').put((byte) 'D').put((byte) '3')
+            .put((byte) 4).put((byte) 0) // version 2.4.0
+            .put((byte) 0)               // no flags
+            .putInt(syncsafe(10 + frameSize));
+        tag.put((byte) 'P').put((byte) 'R').put((byte) 'I').put((byte) 'V')
+            .putInt(syncsafe(frameSize))
+            .putShort((short) 0)
+            .put(TIMESTAMP_OWNER)
+            .putLong(pts);
+        return tag.flip();
+    }
+
+    // ID3 sizes keep the top bit of every byte clear
+    private static int syncsafe(int size) {
+        return (size & 0x7F) | (size & 0x3F80) << 1 | (size & 0x1FC000) << 2 | (size & 0xFE00000) << 3;
+    }
+
+    // Segment URIs carry the version so the playlist can be served from a stable URL
+    private void appendEntry(StringBuilder entries, String version, int index, long micros) {
+        entries.append(String.format(Locale.ROOT, "#EXTINF:%.3f,", micros / 1_000_000.0))
+            .append('\n')
+            .append(version).append('/').append(segmentName(index))
+            .append('\n');
+    }
+
+    private void publish(Path workDir, Path versionDir) throws IOException {
+        try {
+            Files.move(workDir, versionDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(workDir, versionDir);
+        }
+    }
+
+    // Older renditions of a replaced file are never referenced again
+    private void removeStaleVersions(Path trackDir, String currentVersion) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(trackDir)) {
+            for (Path dir : stream) {
+                String name = dir.getFileName().toString();
+                if (!name.equals(currentVersion) && !name.endsWith(".tmp")) {
+                    deleteRecursively(dir);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error removing stale HLS versions: " + e.getMessage());
+        }
+    }
+
+    private Path trackDir(String filename) {
+        Path root = Paths.get(outputDir).toAbsolutePath().normalize();
+        Path dir = root.resolve(filename).normalize();
+        if (!dir.startsWith(root) || dir.equals(root)) {
+            throw new IllegalArgumentException("Invalid filename: " + filename);
+        }
+        return dir;
+    }
+
+    private Path resolveVersionDir(String filename, String version) {
+        if (!VERSION_NAME.matcher(version).matches()) {
+            throw new IllegalArgumentException("Invalid version: " + version);
+        }
+        return trackDir(filename).resolve(version);
+    }
+
+    private static String versionOf(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.size()) + "-"
+            + Long.toHexString(attributes.lastModifiedTime().toMillis());
+    }
+
+    private static String segmentName(int index) {
+        return String.format("segment_%05d.mp3", index);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (var walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    System.err.println("Error deleting: " + p);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.model.Song;
+import com.music.musicapp.repository.SongRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded off-heap cache of memory-mapped audio files.
+ *
+ * Popular tracks are mapped once and served straight from the mapping, so a hit
+ * costs no exists/readable/size calls against the filesystem. Files are admitted
+ * when their Song.playCount or their recent request count shows they are hot, and
+ * the least recently used mappings are dropped once the resident size budget is
+ * exceeded. Dropped mappings are released by the GC.
+ */
+@Service
+public class HotTrackCache {
+
+    @Value("${stream.hot-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stream.hot-cache.max-size-mb:256}")
+    private int maxSizeMB;
+
+    @Value("${stream.hot-cache.max-file-size-mb:32}")
+    private int maxFileSizeMB;
+
+    @Value("${stream.hot-cache.min-play-count:50}")
+    private int minPlayCount;
+
+    @Value("${stream.hot-cache.min-requests:3}")
+    private int minRequests;
+
+    // Derived files (HLS segments and playlists, waveform peaks) are never songs; skip the play count lookup for them
+    @Value("${hls.output-dir:./uploads/hls}")
+    private String hlsOutputDir;
+
+    @Value("${waveform.output-dir:./uploads/waveforms}")
+    private String waveformOutputDir;
+
+    private static final Set<String> AUDIO_EXTENSIONS = Set.of("mp3", "wav", "ogg", "flac", "m4a", "mp4", "aac");
+
+    // Upper bound on the number of cold files we keep request counters for
+    private static final int MAX_TRACKED_FILES = 10_000;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    // Access-ordered so the eldest entry is the least recently streamed; guarded by "this"
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Path, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    private long residentBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Look up a mapped file; null on a miss
+    public Entry get(Path file) {
+        if (!enabled) return null;
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key(file));
+        }
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    // Called after a miss was served from disk; maps the file once it has proven to be hot
+    public Entry recordMiss(Path file, BasicFileAttributes attributes, String etag) {
+        if (!enabled) return null;
+
+        long size = attributes.size();
+        if (size <= 0 || size > maxFileSizeMB * 1024L * 1024L) {
+            return null;
+        }
+
+        Path key = key(file);
+        if (!shouldAdmit(key)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            Entry entry = new Entry(buffer, size, attributes.lastModifiedTime().toMillis(), etag);
+            admit(key, entry);
+            requestCounts.remove(key);
+            return entry;
+        } catch (IOException e) {
+            System.err.println("Error mapping hot track " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Drop a file whose content changed or was deleted
+    public void invalidate(Path file) {
+        Path key = key(file);
+        synchronized (this) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                residentBytes -= removed.length;
+            }
+        }
+        requestCounts.remove(key);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("residentBytes", residentBytes);
+        }
+        stats.put("maxSizeMB", maxSizeMB);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("admissions", admissions.sum());
+        stats.put("evictions", evictions.sum());
+
+        long lookups = hits.sum() + misses.sum();
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hits.sum() / lookups);
+        return stats;
+    }
+
+    // Hot if the catalogue says it is popular, or it keeps getting requested here
+    private boolean shouldAdmit(Path key) {
+        if (requestCounts.size() > MAX_TRACKED_FILES) {
+            decayRequestCounts();
+        }
+
+        int requests = requestCounts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (requests >= minRequests) {
+            return true;
+        }
+
+        // Only ask the database on the first sighting of a source audio file
+        if (requests == 1 && isSourceAudio(key)) {
+            Optional<Song> song = songRepository.findFirstByFilePath(key.getFileName().toString());
+            return song.map(Song::getPlayCount)
+                .map(playCount -> playCount >= minPlayCount)
+                .orElse(false);
+        }
+        return false;
+    }
+
+    // Halve every count and forget the files that reach zero: one-off requests from a scan go,
+    // files that were requested repeatedly keep part of their history
+    private void decayRequestCounts() {
+        synchronized (requestCounts) {
+            if (requestCounts.size() <= MAX_TRACKED_FILES) return; // another thread just did it
+            requestCounts.values().removeIf(count -> count.updateAndGet(value -> value / 2) == 0);
+        }
+    }
+
+    private boolean isSourceAudio(Path key) {
+        String format = blobStoreService.formatOf(key);
+        if (format == null || !AUDIO_EXTENSIONS.contains(format)) {
+            return false;
+        }
+        return !key.startsWith(key(Path.of(hlsOutputDir))) && !key.startsWith(key(Path.of(waveformOutputDir)));
+    }
+
+    private synchronized void admit(Path key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            residentBytes -= previous.length;
+        }
+        residentBytes += entry.length;
+        admissions.increment();
+
+        // Evict least recently streamed files until we are back under budget
+        long maxBytes = maxSizeMB * 1024L * 1024L;
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (residentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, Entry> eldest = iterator.next();
+            if (eldest.getValue() == entry) {
+                continue;
+            }
+            residentBytes -= eldest.getValue().length;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    // A mapped file plus the metadata needed to answer requests without touching the disk
+    public static final class Entry {
+        private final MappedByteBuffer buffer;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+
+        private Entry(MappedByteBuffer buffer, long length, long lastModified, String etag) {
+            this.buffer = buffer;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+
+        // Independent view so concurrent readers do not share position/limit
+        public ByteBuffer slice(long start, long count) {
+            return buffer.duplicate()
+                .position((int) start)
+                .limit((int) (start + count));
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
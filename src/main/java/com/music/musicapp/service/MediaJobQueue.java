@@ -0,0 +1,72 @@
+package com.music.musicapp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small bounded worker pool for post-upload media jobs (segmenting, tagging, peaks).
+ *
+ * Jobs never run on the request thread. When the queue is full a job is dropped and
+ * logged rather than blocking the upload; every job here can be redone lazily.
+ */
+@Service
+public class MediaJobQueue {
+
+    private final ThreadPoolExecutor executor;
+
+    public MediaJobQueue(@Value("${media.jobs.threads:2}") int threads,
+                         @Value("${media.jobs.queue-capacity:500}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads, threads,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "media-job-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Queue a job; false if the queue is full
+    public boolean submit(String description, Runnable job) {
+        try {
+            executor.execute(() -> {
+                try {
+                    job.run();
+                } catch (Exception e) {
+                    System.err.println("Media job failed (" + description + "): " + e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.err.println("Media job queue full, dropped: " + description);
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeJobs", executor.getActiveCount());
+        stats.put("queuedJobs", executor.getQueue().size());
+        stats.put("completedJobs", executor.getCompletedTaskCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
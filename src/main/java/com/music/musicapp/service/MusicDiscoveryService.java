@@ -2,12 +2,14 @@ package com.music.musicapp.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -47,31 +49,39 @@ public class MusicDiscoveryService {
         });
     }
     
+    // Lets the cache reload popular searches and the trending list after a restart
+    @PostConstruct
+    public void registerCacheWarmers() {
+        cacheService.registerQueryWarmer(CacheNamespace.MUSIC_SEARCH, this::searchMusic);
+        cacheService.registerWarmer(CacheNamespace.TRENDING, key -> getTrendingMusic());
+    }
+    
     // SIMPLIFIED: Search music from MusicBrainz
     public List<Map<String, Object>> searchMusic(String query, int limit) {
         if (!discoveryEnabled) {
             return Collections.emptyList();
         }
         
-        String cacheKey = "music_search_" + query + "_" + limit;
-        
-        // Check cache first
-        if (cacheEnabled) {
-            List<Map<String, Object>> cached = cacheService.getFromCache(cacheKey);
-            if (cached != null && !cached.isEmpty()) {
-                return cached;
-            }
-        }
-        
-        List<Map<String, Object>> results = new ArrayList<>();
+        List<Map<String, Object>> results;
         
         try {
-            // Search MusicBrainz
-            results = searchMusicBrainz(query, limit);
-            
-            // Cache results
-            if (cacheEnabled && !results.isEmpty()) {
-                cacheService.saveToCache(cacheKey, results, cacheDuration);
+            if (cacheEnabled) {
+                // Spelling variants of a query and nearby limits share one entry
+                String normalizedQuery = CacheNamespace.normalizeQuery(query);
+                int bucketLimit = CacheNamespace.bucketLimit(limit);
+                String cacheKey = CacheNamespace.MUSIC_SEARCH.queryKey(normalizedQuery, bucketLimit);
+                
+                // Concurrent misses share one MusicBrainz call (rate limited to ~1 req/s); empty results are not cached.
+                // While MusicBrainz is failing this throws at once and the mock fallback below is used.
+                results = CacheNamespace.firstResults(cacheService.getOrLoad(cacheKey, "musicbrainz", cacheDuration, 0, () -> {
+                    List<Map<String, Object>> found = searchMusicBrainz(normalizedQuery, bucketLimit);
+                    return found.isEmpty() ? null : found;
+                }), limit);
+                if (results == null) {
+                    results = new ArrayList<>();
+                }
+            } else {
+                results = searchMusicBrainz(query, limit);
             }
             
         } catch (Exception e) {
@@ -83,59 +93,58 @@ public class MusicDiscoveryService {
         return results;
     }
     
-    // Search MusicBrainz
-    private List<Map<String, Object>> searchMusicBrainz(String query, int limit) {
+    // Search MusicBrainz; failures propagate so the cache can back off from a failing upstream
+    private List<Map<String, Object>> searchMusicBrainz(String query, int limit) throws IOException {
         List<Map<String, Object>> results = new ArrayList<>();
         
-        try {
-            String url = "https://musicbrainz.org/ws/2/recording";
-            
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
-                .queryParam("query", query)
-                .queryParam("fmt", "json")
-                .queryParam("limit", limit);
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(
-                builder.toUriString(), 
-                String.class
-            );
+        String url = "https://musicbrainz.org/ws/2/recording";
+        
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
+            .queryParam("query", query)
+            .queryParam("fmt", "json")
+            .queryParam("limit", limit);
+        
+        ResponseEntity<String> response = restTemplate.getForEntity(
+            builder.toUriString(), 
+            String.class
+        );
+        
+        if (response.getStatusCode() == HttpStatus.OK) {
+            JsonNode root = objectMapper.readTree(response.getBody());
+            JsonNode recordings = root.path("recordings");
             
-            if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode recordings = root.path("recordings");
+            for (JsonNode recording : recordings) {
+                Map<String, Object> track = new HashMap<>();
                 
-                for (JsonNode recording : recordings) {
-                    Map<String, Object> track = new HashMap<>();
-                    
-                    // Basic track info
-                    track.put("id", "mb_" + recording.path("id").asText());
-                    track.put("title", recording.path("title").asText());
-                    track.put("duration", recording.path("length").asInt() / 1000);
-                    
-                    // Artist info
-                    JsonNode artistCredit = recording.path("artist-credit");
-                    if (artistCredit.isArray() && artistCredit.size() > 0) {
-                        JsonNode artist = artistCredit.get(0).path("artist");
-                        track.put("artist", artist.path("name").asText());
-                        track.put("artistId", artist.path("id").asText());
-                    }
-                    
-                    // Album info
-                    JsonNode releases = recording.path("releases");
-                    if (releases.isArray() && releases.size() > 0) {
-                        JsonNode release = releases.get(0);
-                        track.put("album", release.path("title").asText());
-                        track.put("year", release.path("date").asText().substring(0, 4));
+                // Basic track info
+                track.put("id", "mb_" + recording.path("id").asText());
+                track.put("title", recording.path("title").asText());
+                track.put("duration", recording.path("length").asInt() / 1000);
+                
+                // Artist info
+                JsonNode artistCredit = recording.path("artist-credit");
+                if (artistCredit.isArray() && artistCredit.size() > 0) {
+                    JsonNode artist = artistCredit.get(0).path("artist");
+                    track.put("artist", artist.path("name").asText());
+                    track.put("artistId", artist.path("id").asText());
+                }
+                
+                // Album info
+                JsonNode releases = recording.path("releases");
+                if (releases.isArray() && releases.size() > 0) {
+                    JsonNode release = releases.get(0);
+                    track.put("album", release.path("title").asText());
+                    String date = release.path("date").asText();
+                    if (date.length() >= 4) {
+                        track.put("year", date.substring(0, 4));
                     }
-                    
-                    track.put("source", "MusicBrainz");
-                    track.put("type", "music");
-                    
-                    results.add(track);
                 }
+                
+                track.put("source", "MusicBrainz");
+                track.put("type", "music");
+                
+                results.add(track);
             }
-        } catch (Exception e) {
-            System.err.println("Error searching MusicBrainz: " + e.getMessage());
         }
         
         return results;
@@ -203,24 +212,14 @@ public class MusicDiscoveryService {
     
     // Get trending music (simplified)
     public List<Map<String, Object>> getTrendingMusic() {
-        String cacheKey = "trending_music";
-        
-        if (cacheEnabled) {
-            List<Map<String, Object>> cached = cacheService.getFromCache(cacheKey);
-            if (cached != null) {
-                return cached;
-            }
-        }
-        
-        // Return popular tracks
-        List<Map<String, Object>> trending = getMockMusicData("", 10);
+        String cacheKey = CacheNamespace.TRENDING.key("music");
         
-        // Cache results
-        if (cacheEnabled) {
-            cacheService.saveToCache(cacheKey, trending, 3600); // 1 hour
+        if (!cacheEnabled) {
+            return getMockMusicData("", 10);
         }
         
-        return trending;
+        // Return popular tracks; fresh for 1 hour, then served stale for up to 1 more while it refreshes
+        return cacheService.getOrLoad(cacheKey, 3600, 3600, () -> getMockMusicData("", 10));
     }
     
     // Get available genres
@@ -0,0 +1,197 @@
+package com.music.musicapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.musicapp.util.TimerWheel;
+import com.music.musicapp.util.WTinyLfuCache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One named Spring cache with its own TTL, weight budget and serialization
+ * policy, built from the same pieces as {@link CacheService}: a W-TinyLFU
+ * store, a timer wheel for expiry and single-flight loading.
+ *
+ * REFERENCE keeps the returned object itself, so callers share one instance
+ * and must not mutate it. JSON stores an encoded copy and decodes a fresh one
+ * per read, which isolates callers and makes the weight an exact byte count.
+ */
+public class NamedCache extends AbstractValueAdaptingCache {
+
+    public enum Serialization { REFERENCE, JSON }
+
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final String name;
+    private final long ttlSeconds;
+    private final Serialization serialization;
+    private final ObjectMapper objectMapper;
+
+    private final WTinyLfuCache<Object, Entry> store;
+    private final TimerWheel<Object> expiryWheel = new TimerWheel<>(System.currentTimeMillis());
+    private final Map<Object, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder serializationFailures = new LongAdder();
+
+    public NamedCache(String name, long ttlSeconds, long maxWeightBytes,
+                      Serialization serialization, ObjectMapper objectMapper) {
+        super(true);
+        this.name = name;
+        this.ttlSeconds = ttlSeconds;
+        this.serialization = serialization;
+        this.objectMapper = objectMapper;
+        this.store = new WTinyLfuCache<>(maxWeightBytes, (int) Math.min(100_000, Math.max(1024, maxWeightBytes / 1024)));
+        this.store.setEvictionListener((key, entry) -> expiryWheel.cancel(key));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Entry entry = store.get(key);
+        if (entry == null) return null;
+
+        if (entry.expiresAt > 0 && entry.expiresAt <= System.currentTimeMillis()) {
+            if (store.remove(key, entry)) {
+                expiryWheel.cancel(key);
+                expirations.increment();
+            }
+            return null;
+        }
+
+        try {
+            return decode(entry);
+        } catch (IOException e) {
+            // Treat an unreadable entry as a miss so the method runs again
+            System.err.println("Cache " + name + " could not decode " + key + ": " + e.getMessage());
+            serializationFailures.increment();
+            store.remove(key, entry);
+            return null;
+        }
+    }
+
+    // Single-flight: concurrent misses for one key wait for the first caller's load
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object stored = lookup(key);
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightLoads.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return (T) fromStoreValue(existing.join());
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+
+        try {
+            loads.increment();
+            T value = valueLoader.call();
+            put(key, value);
+            created.complete(toStoreValue(value));
+            return value;
+        } catch (Throwable e) {
+            loadFailures.increment();
+            created.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            inFlightLoads.remove(key, created);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        Entry entry;
+        try {
+            entry = encode(storeValue);
+        } catch (IOException e) {
+            // Not cacheable under this policy; leave the key uncached rather than fail the call
+            System.err.println("Cache " + name + " could not encode " + key + ": " + e.getMessage());
+            serializationFailures.increment();
+            evict(key);
+            return;
+        }
+
+        store.put(key, entry, entry.weight);
+        if (entry.expiresAt > 0) {
+            expiryWheel.schedule(key, entry.expiresAt);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        store.remove(key);
+        expiryWheel.cancel(key);
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+        expiryWheel.clear();
+    }
+
+    // Drop entries whose timers fired; called by the manager's sweep
+    void expireEntries(long nowMillis) {
+        expiryWheel.advance(nowMillis, key -> {
+            Entry entry = store.peek(key);
+            if (entry != null && entry.expiresAt <= nowMillis && store.remove(key, entry)) {
+                expirations.increment();
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(store.getStats());
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("serialization", serialization.name().toLowerCase());
+        stats.put("loads", loads.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("serializationFailures", serializationFailures.sum());
+        return stats;
+    }
+
+    private Entry encode(Object storeValue) throws IOException {
+        long expiresAt = ttlSeconds > 0 ? System.currentTimeMillis() + ttlSeconds * 1000 : 0;
+        if (serialization == Serialization.JSON && storeValue != NullValue.INSTANCE) {
+            byte[] json = objectMapper.writerFor(Object.class).writeValueAsBytes(storeValue);
+            return new Entry(json, expiresAt, ENTRY_OVERHEAD + json.length);
+        }
+        return new Entry(storeValue, expiresAt, ENTRY_OVERHEAD + CacheService.estimateSize(storeValue));
+    }
+
+    private Object decode(Entry entry) throws IOException {
+        if (serialization == Serialization.JSON && entry.value instanceof byte[] json) {
+            return objectMapper.readValue(json, Object.class);
+        }
+        return entry.value;
+    }
+
+    private record Entry(Object value, long expiresAt, long weight) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.music.musicapp.service;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.music.musicapp.service.NamedCache.Serialization;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Spring CacheManager for @Cacheable/@CacheEvict; every named cache gets its own policy
+@Service
+public class NamedCacheManager implements CacheManager {
+
+    // Built-in policies; each can be overridden with cache.named.<name>.ttl-seconds / max-weight-mb / serialization
+    private static final Map<String, Policy> DEFAULT_POLICIES = Map.of(
+        "songs-by-id", new Policy(300, 8, Serialization.JSON),
+        "search", new Policy(60, 8, Serialization.JSON),
+        "trending", new Policy(300, 2, Serialization.JSON),
+        "playlists", new Policy(120, 8, Serialization.JSON),
+        "user-profile", new Policy(60, 4, Serialization.REFERENCE)
+    );
+    private static final Policy FALLBACK_POLICY = new Policy(600, 4, Serialization.REFERENCE);
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, NamedCache> caches = new ConcurrentHashMap<>();
+    private ObjectMapper typedMapper;
+
+    @PostConstruct
+    public void initialize() {
+        // JSON entries carry their types so DTOs decode back to DTOs, restricted to our own and JDK value types
+        typedMapper = objectMapper.copy().activateDefaultTyping(
+            BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.music.musicapp.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.lang.")
+                .allowIfSubType("java.time.")
+                .build(),
+            ObjectMapper.DefaultTyping.NON_FINAL,
+            JsonTypeInfo.As.PROPERTY);
+
+        DEFAULT_POLICIES.keySet().forEach(this::getCache);
+        System.out.println("Named caches ready: " + caches.keySet());
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    // Expire entries across all named caches
+    @Scheduled(fixedDelay = 1000)
+    public void expireEntries() {
+        long now = System.currentTimeMillis();
+        for (NamedCache cache : caches.values()) {
+            cache.expireEntries(now);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        caches.keySet().stream().sorted()
+            .forEach(name -> stats.put(name, caches.get(name).getStats()));
+        return stats;
+    }
+
+    private NamedCache createCache(String name) {
+        Policy defaults = DEFAULT_POLICIES.getOrDefault(name, policy("default", FALLBACK_POLICY));
+        Policy policy = policy(name, defaults);
+        return new NamedCache(name, policy.ttlSeconds, policy.maxWeightMb * 1024 * 1024,
+            policy.serialization, typedMapper);
+    }
+
+    private Policy policy(String name, Policy defaults) {
+        String prefix = "cache.named." + name + ".";
+        long ttlSeconds = environment.getProperty(prefix + "ttl-seconds", Long.class, defaults.ttlSeconds);
+        long maxWeightMb = environment.getProperty(prefix + "max-weight-mb", Long.class, defaults.maxWeightMb);
+        String serialization = environment.getProperty(prefix + "serialization", defaults.serialization.name());
+        try {
+            return new Policy(ttlSeconds, maxWeightMb, Serialization.valueOf(serialization.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown serialization '" + serialization + "' for cache " + name
+                + ", using " + defaults.serialization.name().toLowerCase());
+            return new Policy(ttlSeconds, maxWeightMb, defaults.serialization);
+        }
+    }
+
+    private record Policy(long ttlSeconds, long maxWeightMb, Serialization serialization) {
+    }
+}
@@ -9,6 +9,8 @@ import com.music.musicapp.repository.PlaylistRepository;
 import com.music.musicapp.repository.SongRepository;
 import com.music.musicapp.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,6 +47,7 @@ public class PlaylistService {
     }
     
     // Get playlist by ID
+    @Cacheable(value = "playlists", key = "#id", sync = true)
     public PlaylistDTO getPlaylistById(Long id) {
         Optional<Playlist> playlistOpt = playlistRepository.findById(id);
         
@@ -64,6 +67,7 @@ public class PlaylistService {
     // PlaylistService.java ke end mein (addExternalSongToPlaylist ke baad) yeh method add karo:
 
 @Transactional
+@CacheEvict(value = "playlists", key = "#id")
 public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     Optional<Playlist> playlistOpt = playlistRepository.findById(id);
     
@@ -109,6 +113,7 @@ public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     
     // Update playlist
     @Transactional
+    @CacheEvict(value = "playlists", key = "#id")
     public PlaylistDTO updatePlaylist(Long id, String name, String description, Boolean isPublic) {
         Optional<Playlist> playlistOpt = playlistRepository.findById(id);
         
@@ -137,6 +142,7 @@ public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     
     // Delete playlist
     @Transactional
+    @CacheEvict(value = "playlists", key = "#id")
     public boolean deletePlaylist(Long id) {
         if (playlistRepository.existsById(id)) {
             playlistRepository.deleteById(id);
@@ -147,6 +153,7 @@ public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     
     // Add song to playlist
     @Transactional
+    @CacheEvict(value = "playlists", key = "#playlistId")
     public PlaylistDTO addSongToPlaylist(Long playlistId, Long songId) {
         Optional<Playlist> playlistOpt = playlistRepository.findById(playlistId);
         Optional<Song> songOpt = songRepository.findById(songId);
@@ -181,6 +188,7 @@ public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     
     // Remove song from playlist
     @Transactional
+    @CacheEvict(value = "playlists", key = "#playlistId")
     public PlaylistDTO removeSongFromPlaylist(Long playlistId, Long songId) {
         Optional<Playlist> playlistOpt = playlistRepository.findById(playlistId);
         Optional<Song> songOpt = songRepository.findById(songId);
@@ -289,6 +297,7 @@ public PlaylistDTO renamePlaylist(Long id, String newName, Long userId) {
     }
     // PlaylistService.java ke end mein add karo
     @Transactional
+    @CacheEvict(value = "playlists", key = "#playlistId")
 public PlaylistDTO addExternalSongToPlaylist(Long playlistId, SongDTO songDTO) {
     // 1. Playlist dhundho
     Playlist playlist = playlistRepository.findById(playlistId)
@@ -2,12 +2,14 @@ package com.music.musicapp.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,152 +32,159 @@ public class PodcastService {
         this.cacheService = cacheService;
     }
     
+    // Lets the cache reload popular searches and episode lists after a restart
+    @PostConstruct
+    public void registerCacheWarmers() {
+        cacheService.registerQueryWarmer(CacheNamespace.PODCAST_SEARCH, this::searchPodcasts);
+        cacheService.registerQueryWarmer(CacheNamespace.PODCAST_EPISODES, this::getPodcastEpisodes);
+    }
+    
     // Search podcasts
     public List<Map<String, Object>> searchPodcasts(String query, int limit) {
         if (!podcastEnabled) {
             return Collections.emptyList();
         }
         
-        String cacheKey = "podcast_search_" + query + "_" + limit;
+        // Spelling variants of a query and nearby limits share one entry
+        String normalizedQuery = CacheNamespace.normalizeQuery(query);
+        int bucketLimit = CacheNamespace.bucketLimit(limit);
+        String cacheKey = CacheNamespace.PODCAST_SEARCH.queryKey(normalizedQuery, bucketLimit);
+        
+        List<Map<String, Object>> results = new ArrayList<>();
         
-        // Check cache
-        List<Map<String, Object>> cached = cacheService.getFromCache(cacheKey);
-        if (cached != null) {
-            return cached;
+        try {
+            // Concurrent misses for one query share a single upstream call; while the podcast
+            // APIs are failing this throws at once instead of waiting out their timeouts
+            results = CacheNamespace.firstResults(cacheService.getOrLoad(cacheKey, "podcast-search", 3600, 0,
+                () -> loadPodcasts(normalizedQuery, bucketLimit)), limit); // 1 hour
+        } catch (Exception e) {
+            System.err.println("Podcast search error: " + e.getMessage());
         }
         
+        return results;
+    }
+    
+    private List<Map<String, Object>> loadPodcasts(String query, int limit) throws IOException {
         List<Map<String, Object>> results = new ArrayList<>();
         
-        try {
-            // Try Listen Notes API first
-            if (listenNotesApiKey != null && !listenNotesApiKey.isEmpty()) {
+        // Try Listen Notes API first
+        if (listenNotesApiKey != null && !listenNotesApiKey.isEmpty()) {
+            try {
                 results = searchListenNotes(query, limit);
+            } catch (Exception e) {
+                System.err.println("Listen Notes API error: " + e.getMessage());
             }
-            
-            // If no results or API not available, use PodcastIndex
-            if (results.isEmpty()) {
-                results = searchPodcastIndex(query, limit);
-            }
-            
-            // Cache results
-            cacheService.saveToCache(cacheKey, results, 3600); // 1 hour
-            
-        } catch (Exception e) {
-            System.err.println("Podcast search error: " + e.getMessage());
+        }
+        
+        // If no results or API not available, use PodcastIndex
+        if (results.isEmpty()) {
+            results = searchPodcastIndex(query, limit);
         }
         
         return results;
     }
     
-    // Search using Listen Notes API
-    private List<Map<String, Object>> searchListenNotes(String query, int limit) {
+    // Search using Listen Notes API; failures propagate to the caller
+    private List<Map<String, Object>> searchListenNotes(String query, int limit) throws IOException {
         List<Map<String, Object>> results = new ArrayList<>();
         
-        try {
-            String url = "https://listen-api.listennotes.com/api/v2/search";
-            
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
-                .queryParam("q", query)
-                .queryParam("type", "podcast")
-                .queryParam("language", "English")
-                .queryParam("safe_mode", "1")
-                .queryParam("only_in", "title,description")
-                .queryParam("sort_by_date", "0")
-                .queryParam("len_min", "10")
-                .queryParam("len_max", "60");
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("X-ListenAPI-Key", listenNotesApiKey);
-            
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                builder.toUriString(),
-                HttpMethod.GET,
-                entity,
-                String.class
-            );
+        String url = "https://listen-api.listennotes.com/api/v2/search";
+        
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
+            .queryParam("q", query)
+            .queryParam("type", "podcast")
+            .queryParam("language", "English")
+            .queryParam("safe_mode", "1")
+            .queryParam("only_in", "title,description")
+            .queryParam("sort_by_date", "0")
+            .queryParam("len_min", "10")
+            .queryParam("len_max", "60");
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-ListenAPI-Key", listenNotesApiKey);
+        
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+        
+        ResponseEntity<String> response = restTemplate.exchange(
+            builder.toUriString(),
+            HttpMethod.GET,
+            entity,
+            String.class
+        );
+        
+        if (response.getStatusCode() == HttpStatus.OK) {
+            JsonNode root = objectMapper.readTree(response.getBody());
+            JsonNode podcasts = root.path("results");
             
-            if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode podcasts = root.path("results");
+            for (JsonNode podcast : podcasts) {
+                if (results.size() >= limit) break;
                 
-                for (JsonNode podcast : podcasts) {
-                    if (results.size() >= limit) break;
-                    
-                    Map<String, Object> podcastInfo = new HashMap<>();
-                    podcastInfo.put("id", "listennotes_" + podcast.path("id").asText());
-                    podcastInfo.put("title", podcast.path("title_original").asText());
-                    podcastInfo.put("description", podcast.path("description_original").asText());
-                    podcastInfo.put("publisher", podcast.path("publisher_original").asText());
-                    podcastInfo.put("thumbnail", podcast.path("thumbnail").asText());
-                    podcastInfo.put("listen_score", podcast.path("listen_score").asDouble());
-                    podcastInfo.put("total_episodes", podcast.path("total_episodes").asInt());
-                    podcastInfo.put("explicit_content", podcast.path("explicit_content").asBoolean());
-                    podcastInfo.put("source", "Listen Notes");
-                    
-                    // Get genres
-                    List<String> genres = new ArrayList<>();
-                    JsonNode genreNodes = podcast.path("genre_ids");
-                    if (genreNodes.isArray()) {
-                        for (JsonNode genreId : genreNodes) {
-                            String genre = getGenreName(genreId.asInt());
-                            if (genre != null) genres.add(genre);
-                        }
+                Map<String, Object> podcastInfo = new HashMap<>();
+                podcastInfo.put("id", "listennotes_" + podcast.path("id").asText());
+                podcastInfo.put("title", podcast.path("title_original").asText());
+                podcastInfo.put("description", podcast.path("description_original").asText());
+                podcastInfo.put("publisher", podcast.path("publisher_original").asText());
+                podcastInfo.put("thumbnail", podcast.path("thumbnail").asText());
+                podcastInfo.put("listen_score", podcast.path("listen_score").asDouble());
+                podcastInfo.put("total_episodes", podcast.path("total_episodes").asInt());
+                podcastInfo.put("explicit_content", podcast.path("explicit_content").asBoolean());
+                podcastInfo.put("source", "Listen Notes");
+                
+                // Get genres
+                List<String> genres = new ArrayList<>();
+                JsonNode genreNodes = podcast.path("genre_ids");
+                if (genreNodes.isArray()) {
+                    for (JsonNode genreId : genreNodes) {
+                        String genre = getGenreName(genreId.asInt());
+                        if (genre != null) genres.add(genre);
                     }
-                    podcastInfo.put("genres", genres);
-                    
-                    results.add(podcastInfo);
                 }
+                podcastInfo.put("genres", genres);
+                
+                results.add(podcastInfo);
             }
-        } catch (Exception e) {
-            System.err.println("Listen Notes API error: " + e.getMessage());
         }
         
         return results;
     }
     
-    // Search using PodcastIndex API
-    private List<Map<String, Object>> searchPodcastIndex(String query, int limit) {
+    // Search using PodcastIndex API; failures propagate to the caller
+    private List<Map<String, Object>> searchPodcastIndex(String query, int limit) throws IOException {
         List<Map<String, Object>> results = new ArrayList<>();
         
-        try {
-            String url = "https://api.podcastindex.org/api/1.0/search/byterm";
-            
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
-                .queryParam("q", query)
-                .queryParam("max", limit);
-            
-            // PodcastIndex requires authentication
-            long time = System.currentTimeMillis() / 1000;
-            String apiHeaderTime = String.valueOf(time);
-            // Note: You need to sign the request with API key and secret
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(
-                builder.toUriString(), 
-                String.class
-            );
+        String url = "https://api.podcastindex.org/api/1.0/search/byterm";
+        
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
+            .queryParam("q", query)
+            .queryParam("max", limit);
+        
+        // PodcastIndex requires authentication
+        long time = System.currentTimeMillis() / 1000;
+        String apiHeaderTime = String.valueOf(time);
+        // Note: You need to sign the request with API key and secret
+        
+        ResponseEntity<String> response = restTemplate.getForEntity(
+            builder.toUriString(), 
+            String.class
+        );
+        
+        if (response.getStatusCode() == HttpStatus.OK) {
+            JsonNode root = objectMapper.readTree(response.getBody());
+            JsonNode feeds = root.path("feeds");
             
-            if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode feeds = root.path("feeds");
+            for (JsonNode feed : feeds) {
+                Map<String, Object> podcastInfo = new HashMap<>();
+                podcastInfo.put("id", "podcastindex_" + feed.path("id").asText());
+                podcastInfo.put("title", feed.path("title").asText());
+                podcastInfo.put("description", feed.path("description").asText());
+                podcastInfo.put("author", feed.path("author").asText());
+                podcastInfo.put("image", feed.path("image").asText());
+                podcastInfo.put("episodeCount", feed.path("episodeCount").asInt());
+                podcastInfo.put("categories", feed.path("categories").asText());
+                podcastInfo.put("source", "PodcastIndex");
                 
-                for (JsonNode feed : feeds) {
-                    Map<String, Object> podcastInfo = new HashMap<>();
-                    podcastInfo.put("id", "podcastindex_" + feed.path("id").asText());
-                    podcastInfo.put("title", feed.path("title").asText());
-                    podcastInfo.put("description", feed.path("description").asText());
-                    podcastInfo.put("author", feed.path("author").asText());
-                    podcastInfo.put("image", feed.path("image").asText());
-                    podcastInfo.put("episodeCount", feed.path("episodeCount").asInt());
-                    podcastInfo.put("categories", feed.path("categories").asText());
-                    podcastInfo.put("source", "PodcastIndex");
-                    
-                    results.add(podcastInfo);
-                }
+                results.add(podcastInfo);
             }
-        } catch (Exception e) {
-            System.err.println("PodcastIndex API error: " + e.getMessage());
         }
         
         return results;
@@ -183,22 +192,15 @@ public class PodcastService {
     
     // Get podcast episodes
     public List<Map<String, Object>> getPodcastEpisodes(String podcastId, int limit) {
-        String cacheKey = "podcast_episodes_" + podcastId + "_" + limit;
-        
-        List<Map<String, Object>> cached = cacheService.getFromCache(cacheKey);
-        if (cached != null) {
-            return cached;
-        }
+        int bucketLimit = CacheNamespace.bucketLimit(limit);
+        String cacheKey = CacheNamespace.PODCAST_EPISODES.key(podcastId, bucketLimit);
         
         List<Map<String, Object>> episodes = new ArrayList<>();
         
         try {
-            // Mock episodes for demo
-            episodes = createMockEpisodes(podcastId, limit);
-            
-            // Cache results
-            cacheService.saveToCache(cacheKey, episodes, 1800); // 30 minutes
-            
+            // Mock episodes for demo; fresh for 30 minutes, then served stale for up to 30 more while it refreshes
+            episodes = CacheNamespace.firstResults(cacheService.getOrLoad(cacheKey, 1800, 1800,
+                () -> createMockEpisodes(podcastId, bucketLimit)), limit);
         } catch (Exception e) {
             System.err.println("Error getting podcast episodes: " + e.getMessage());
         }
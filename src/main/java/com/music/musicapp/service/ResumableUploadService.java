@@ -0,0 +1,220 @@
+package com.music.musicapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.musicapp.exception.ResourceNotFoundException;
+import com.music.musicapp.exception.ValidationException;
+import com.music.musicapp.model.UploadSession;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable, chunked uploads for files too large for a single multipart request.
+ *
+ * A session is created with the declared size, chunks are PUT at explicit
+ * offsets and written straight into a .part file with FileChannel.transferFrom
+ * (nothing is buffered on the heap), and completion moves the assembled file
+ * into the blob store after an optional SHA-256 check. The committed offset is
+ * simply the size of the .part file, so an interrupted client (or a restarted
+ * server) resumes from whatever actually reached the disk.
+ */
+@Service
+public class ResumableUploadService {
+
+    // Bytes per transferFrom call; the socket is drained in these steps
+    private static final long TRANSFER_STEP = 1024 * 1024;
+
+    @Value("${upload.resumable.dir:./uploads/partial}")
+    private String partialDir;
+
+    @Value("${upload.resumable.max-size-mb:2048}")
+    private long maxSizeMB;
+
+    @Value("${upload.resumable.max-chunk-mb:64}")
+    private long maxChunkMB;
+
+    @Value("${upload.resumable.expiry-hours:24}")
+    private long expiryHours;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    // Pick up sessions that were in flight before a restart
+    @PostConstruct
+    public void loadSessions() {
+        Path dir = Paths.get(partialDir);
+        if (!Files.isDirectory(dir)) return;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : stream) {
+                try {
+                    UploadSession session = objectMapper.readValue(file.toFile(), UploadSession.class);
+                    sessions.put(session.getId(), session);
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable upload session " + file + ": " + e.getMessage());
+                }
+            }
+            System.out.println("Restored " + sessions.size() + " resumable upload sessions");
+        } catch (IOException e) {
+            System.err.println("Error loading upload sessions: " + e.getMessage());
+        }
+    }
+
+    public UploadSession createSession(String filename, long totalSize, String sha256,
+                                       String title, String artist, String album) throws IOException {
+        if (totalSize <= 0) {
+            throw new ValidationException("Upload size must be positive");
+        }
+        if (totalSize > maxSizeMB * 1024L * 1024L) {
+            throw new ValidationException("Upload exceeds the maximum size of " + maxSizeMB + " MB");
+        }
+        if (sha256 != null && !sha256.isBlank() && !sha256.trim().matches("[0-9a-fA-F]{64}")) {
+            throw new ValidationException("sha256 must be 64 hex characters");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setFilename(filename);
+        session.setTotalSize(totalSize);
+        session.setSha256(sha256);
+        session.setTitle(title);
+        session.setArtist(artist);
+        session.setAlbum(album);
+        session.setCreatedAt(System.currentTimeMillis());
+        session.setUpdatedAt(session.getCreatedAt());
+
+        Files.createDirectories(Paths.get(partialDir));
+        Files.createFile(partFile(session.getId()));
+        saveSession(session);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    public UploadSession getSession(String uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw new ResourceNotFoundException("Upload session", "id", uploadId);
+        }
+        return session;
+    }
+
+    // Bytes durably received so far
+    public long getCommittedOffset(String uploadId) throws IOException {
+        getSession(uploadId);
+        return Files.size(partFile(uploadId));
+    }
+
+    // Append one chunk at the given offset; returns the new committed offset
+    public long writeChunk(String uploadId, long offset, InputStream body) throws IOException {
+        UploadSession session = getSession(uploadId);
+
+        synchronized (session) {
+            Path part = partFile(uploadId);
+            long committed = Files.size(part);
+            if (offset != committed) {
+                throw new IllegalStateException("Offset mismatch: expected " + committed + " but got " + offset);
+            }
+
+            long end = Math.min(session.getTotalSize(), offset + maxChunkMB * 1024L * 1024L);
+            long position = offset;
+
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                ReadableByteChannel source = Channels.newChannel(body);
+                while (position < end) {
+                    long transferred = channel.transferFrom(source, position, Math.min(TRANSFER_STEP, end - position));
+                    if (transferred <= 0) {
+                        break; // end of this request body
+                    }
+                    position += transferred;
+                }
+                // Acknowledge only what is on stable storage
+                channel.force(false);
+            }
+
+            // Persisted so expiry after a restart counts from the last chunk, not from creation
+            session.setUpdatedAt(System.currentTimeMillis());
+            saveSession(session);
+            return position;
+        }
+    }
+
+    // Verify and move the assembled file into the blob store; returns the blob name
+    public String complete(String uploadId) throws IOException {
+        UploadSession session = getSession(uploadId);
+
+        synchronized (session) {
+            Path part = partFile(uploadId);
+            long committed = Files.size(part);
+            if (committed != session.getTotalSize()) {
+                throw new IllegalStateException("Upload incomplete: " + committed + " of "
+                    + session.getTotalSize() + " bytes received");
+            }
+
+            String blobName = fileStorageService.storeAssembledFile(part, session.getFilename(), session.getSha256());
+            sessions.remove(uploadId);
+            Files.deleteIfExists(sessionFile(uploadId));
+            return blobName;
+        }
+    }
+
+    public void abort(String uploadId) throws IOException {
+        UploadSession session = getSession(uploadId);
+        synchronized (session) {
+            sessions.remove(uploadId);
+            Files.deleteIfExists(partFile(uploadId));
+            Files.deleteIfExists(sessionFile(uploadId));
+        }
+    }
+
+    // Drop sessions that have not seen a chunk for a while
+    @Scheduled(fixedDelay = 3600000)
+    public void expireStaleSessions() {
+        long cutoff = System.currentTimeMillis() - expiryHours * 3600_000L;
+        for (UploadSession session : sessions.values()) {
+            if (session.getUpdatedAt() < cutoff) {
+                try {
+                    abort(session.getId());
+                    System.out.println("Expired stale upload session: " + session.getId());
+                } catch (Exception e) {
+                    System.err.println("Error expiring upload session " + session.getId() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Written aside and moved into place, so a crash mid-write never leaves an unreadable session
+    private void saveSession(UploadSession session) throws IOException {
+        Path file = sessionFile(session.getId());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), session);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path partFile(String uploadId) {
+        return Paths.get(partialDir).resolve(uploadId + ".part");
+    }
+
+    private Path sessionFile(String uploadId) {
+        return Paths.get(partialDir).resolve(uploadId + ".json");
+    }
+}
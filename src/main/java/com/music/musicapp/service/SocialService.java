@@ -3,6 +3,9 @@ package com.music.musicapp.service;
 import com.music.musicapp.model.*;
 import com.music.musicapp.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -31,6 +34,7 @@ public class SocialService {
     private SongRepository songRepository;
     
     // Add rating and review
+    @CacheEvict(value = "user-profile", key = "#userId")
     public Map<String, Object> addRatingAndReview(Long userId, String trackId, 
                                                   Double rating, String review, 
                                                   String reviewTitle) {
@@ -201,6 +205,10 @@ public class SocialService {
     }
     
     // Send friend request
+    @Caching(evict = {
+        @CacheEvict(value = "user-profile", key = "#userId"),
+        @CacheEvict(value = "user-profile", key = "#friendId")
+    })
     public Map<String, Object> sendFriendRequest(Long userId, Long friendId) {
         Map<String, Object> result = new HashMap<>();
         
@@ -252,6 +260,10 @@ public class SocialService {
     }
     
     // Accept friend request
+    @Caching(evict = {
+        @CacheEvict(value = "user-profile", key = "#userId"),
+        @CacheEvict(value = "user-profile", key = "#friendId")
+    })
     public Map<String, Object> acceptFriendRequest(Long userId, Long friendId) {
         Map<String, Object> result = new HashMap<>();
         
@@ -291,7 +303,8 @@ public class SocialService {
         return result;
     }
     
-    // Get user profile with stats
+    // Get user profile with stats (failed lookups are not cached)
+    @Cacheable(value = "user-profile", key = "#userId", unless = "#result['success'] != true")
     public Map<String, Object> getUserProfile(Long userId) {
         Map<String, Object> profile = new HashMap<>();
         
@@ -4,14 +4,15 @@ import com.music.musicapp.dto.SongDTO;
 import com.music.musicapp.model.Song;
 import com.music.musicapp.repository.SongRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.util.StringUtils; // Zaroori Import
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -21,6 +22,10 @@ public class SongService {
     
     @Autowired
     private SongRepository songRepository;
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private AudioMetadataService audioMetadataService;
     private final Path fileStorageLocation;
     // Constructor: Ye folder create karega jab app start hoga
     public SongService() {
@@ -32,38 +37,50 @@ public class SongService {
         }
     }
     // --- YE METHOD MISSING THA (Isko dhyan se add karo) ---
+    @CacheEvict(value = {"search", "trending"}, allEntries = true)
     public SongDTO saveSong(String title, String artist, String album, MultipartFile file) throws IOException {
-        // 1. File ka naam saaf karo
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-
-        // 2. File name mein invalid characters check karo
-        if(fileName.contains("..")) {
-            throw new RuntimeException("Sorry! Filename contains invalid path sequence " + fileName);
-        }
-
-        // 3. File ko 'uploads/audio' folder mein copy karo
-        Path targetLocation = this.fileStorageLocation.resolve(fileName);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-        // 4. Database object banao
+        // 1. File ko content-addressed blob store mein daalo (same track twice = one file)
+        String blobName = fileStorageService.storeFile(file);
+        return createSongForBlob(title, artist, album, blobName);
+    }
+    
+    // Song row for audio that is already in the blob store (multipart or resumable upload)
+    @CacheEvict(value = {"search", "trending"}, allEntries = true)
+    public SongDTO createSongForBlob(String title, String artist, String album, String blobName) {
+        // 2. Database object banao
         Song song = new Song();
         song.setTitle(title);
         song.setArtist(artist);
         song.setAlbum(album);
-        song.setFilePath(fileName); // Database mein sirf naam save hoga
-        song.setAudioUrl("/api/songs/play/" + fileName);
-        // 5. Save karo
+        song.setFilePath(blobName); // Blob name doubles as the reference for refcounting
+        song.setAudioUrl("/api/songs/play/" + blobName);
+        // 3. Save karo
         Song savedSong = songRepository.save(song);
+        // Duration, bitrate, format aur size background mein fill honge
+        audioMetadataService.extractInBackground(savedSong.getId(), blobName);
         
-        // 6. DTO return karo
+        // 4. DTO return karo
         return convertToDTO(savedSong);
     }
+    
+    // Song row for a track streamed from an external catalogue (no local audio)
+    @CacheEvict(value = {"search", "trending"}, allEntries = true)
+    public Song saveExternalSong(Song song) {
+        return songRepository.save(song);
+    }
+    
+    // Resolve a /play filename: blobs by hash, older uploads from uploads/audio
+    public Path resolveAudioPath(String filename) {
+        return fileStorageService.getSongAudioPath(filename);
+    }
+    
     public List<SongDTO> getAllSongs() {
         return songRepository.findAll().stream()
             .map(this::convertToDTO)
             .collect(Collectors.toList());
     }
     
+    @Cacheable(value = "songs-by-id", key = "#id", sync = true)
     public SongDTO getSongById(Long id) {
         Optional<Song> songOpt = songRepository.findById(id);
         if (songOpt.isEmpty()) {
@@ -103,6 +120,10 @@ public class SongService {
             .collect(Collectors.toList());
     }
     
+    @Caching(evict = {
+        @CacheEvict(value = "songs-by-id", key = "#songId"),
+        @CacheEvict(value = {"search", "trending"}, allEntries = true)
+    })
     public SongDTO updateSongFilePath(Long songId, String audioFilePath) {
         Optional<Song> songOpt = songRepository.findById(songId);
         if (songOpt.isEmpty()) {
@@ -179,6 +200,7 @@ public class SongService {
     }
     
     // NEW: Search songs by query (title, artist, or album)
+    @Cacheable(value = "search", key = "#query", sync = true)
     public List<SongDTO> searchSongs(String query) {
         return songRepository.searchSongs(query).stream()
             .map(this::convertToDTO)
@@ -186,6 +208,7 @@ public class SongService {
     }
     
     // NEW: Get trending songs
+    @Cacheable(value = "trending", key = "#limit", sync = true)
     public List<SongDTO> getTrendingSongs(int limit) {
         return songRepository.findByOrderByPlayCountDesc().stream()
             .limit(limit)
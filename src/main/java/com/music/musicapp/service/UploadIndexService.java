@@ -0,0 +1,220 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.model.StoredAudioFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of stored audio, so listing uploads never reads the directory.
+ *
+ * Built once at startup from the upload directory and the blob store, then kept
+ * current two ways: FileStorageService records every store/delete it performs,
+ * and a WatchService on the upload directory picks up files added or removed
+ * behind the application's back. Entries are sorted by name, which makes
+ * cursor pagination a tailMap view rather than a scan. A rebuild fills a new
+ * map and swaps it in, so readers never see a half-built index; updates are
+ * serialized with it so none land in the map being replaced.
+ */
+@Service
+public class UploadIndexService {
+
+    private static final Set<String> AUDIO_EXTENSIONS = Set.of("mp3", "wav", "ogg", "flac", "m4a", "aac");
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    private volatile ConcurrentSkipListMap<String, StoredAudioFile> index = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile WatchService watchService;
+
+    @PostConstruct
+    public void initialize() {
+        rebuild();
+        startWatcher();
+    }
+
+    // Full rescan; also used when the watcher overflows
+    public synchronized void rebuild() {
+        ConcurrentSkipListMap<String, StoredAudioFile> fresh = new ConcurrentSkipListMap<>();
+
+        Path root = uploadRoot();
+        if (Files.isDirectory(root)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+                for (Path file : stream) {
+                    add(fresh, file.getFileName().toString(), file);
+                }
+            } catch (IOException e) {
+                System.err.println("Error indexing upload directory: " + e.getMessage());
+            }
+        }
+
+        Path blobRoot = blobStoreService.getRoot();
+        if (Files.isDirectory(blobRoot)) {
+            // ab/cd/<hash>; metadata files and the tmp directory are skipped by the name check
+            try (Stream<Path> walk = Files.walk(blobRoot, 3)) {
+                walk.filter(path -> blobStoreService.isBlobName(path.getFileName().toString()))
+                    .forEach(path -> add(fresh, path.getFileName().toString(), path));
+            } catch (IOException e) {
+                System.err.println("Error indexing blob store: " + e.getMessage());
+            }
+        }
+
+        index = fresh;
+        size.set(fresh.size()); // one O(n) count per rebuild
+        System.out.println("Upload index built: " + size.get() + " audio files");
+    }
+
+    // Add or refresh one entry from the file on disk (non-audio and missing files are ignored)
+    public synchronized void record(String name, Path file) {
+        try {
+            StoredAudioFile entry = entryFor(name, file);
+            if (entry != null && index.put(name, entry) == null) {
+                size.incrementAndGet();
+            }
+        } catch (NoSuchFileException e) {
+            remove(name);
+        } catch (IOException e) {
+            System.err.println("Error indexing " + name + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void remove(String name) {
+        if (index.remove(name) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    // Up to limit entries with names after the cursor (null for the first page)
+    public List<StoredAudioFile> list(String after, int limit) {
+        NavigableMap<String, StoredAudioFile> current = index;
+        NavigableMap<String, StoredAudioFile> view = after == null || after.isEmpty()
+            ? current
+            : current.tailMap(after, false);
+        List<StoredAudioFile> page = new ArrayList<>(Math.min(limit, size.get()));
+        for (StoredAudioFile entry : view.values()) {
+            if (page.size() >= limit) break;
+            page.add(entry);
+        }
+        return page;
+    }
+
+    public StoredAudioFile first() {
+        Map.Entry<String, StoredAudioFile> entry = index.firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // Watch the upload directory for files copied in or removed outside the app
+    private void startWatcher() {
+        Path root = uploadRoot();
+        if (!Files.isDirectory(root)) return;
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            root.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("Upload index watcher unavailable: " + e.getMessage());
+            return;
+        }
+
+        Thread watcher = new Thread(() -> watch(root), "upload-index-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(Path root) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rebuild(); // events were lost
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        remove(name);
+                    } else {
+                        record(name, root.resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Upload directory is no longer watchable; index updates rely on the app only");
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing upload index watcher: " + e.getMessage());
+        }
+    }
+
+    // Used while rebuilding; a file that vanished mid-scan is simply left out
+    private void add(Map<String, StoredAudioFile> target, String name, Path file) {
+        try {
+            StoredAudioFile entry = entryFor(name, file);
+            if (entry != null) {
+                target.put(name, entry);
+            }
+        } catch (NoSuchFileException e) {
+            // deleted since it was listed
+        } catch (IOException e) {
+            System.err.println("Error indexing " + name + ": " + e.getMessage());
+        }
+    }
+
+    // Entry for the file on disk, or null for non-audio files and anything that is not a regular file
+    private StoredAudioFile entryFor(String name, Path file) throws IOException {
+        String format = blobStoreService.formatOf(name);
+        if (format == null || !AUDIO_EXTENSIONS.contains(format)) return null;
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) return null;
+        return new StoredAudioFile(name, attributes.size(), attributes.lastModifiedTime().toMillis(), format);
+    }
+
+    private Path uploadRoot() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+}
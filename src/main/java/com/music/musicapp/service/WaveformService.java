@@ -0,0 +1,398 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.util.Mp3FrameReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Precomputed waveform peaks for seek bars.
+ *
+ * Each stored track is scanned once into a small ".peaks" file holding several
+ * resolutions (2048, 512 and 128 buckets) of 8-bit min/max pairs, so a player
+ * can draw a waveform from a few KB instead of downloading the audio. Layout,
+ * big-endian:
+ *
+ * <pre>
+ * "WPK1" | int durationMillis | short levelCount
+ * per level: int bucketCount | bucketCount x (byte min, byte max)
+ * </pre>
+ *
+ * WAV/AIFF/AU are read as PCM. MP3s are not decoded: each Layer III granule's
+ * global_gain (the quantizer step, i.e. the loudness the encoder chose) is read
+ * from the frame side info and used as an envelope, which tracks the shape of
+ * the music closely enough for a seek bar at a fraction of the cost.
+ */
+@Service
+public class WaveformService {
+
+    public static final String PEAKS_SUFFIX = ".peaks";
+
+    private static final byte[] MAGIC = {'W', 'P', 'K', '1'};
+    private static final int[] LEVEL_BUCKETS = {2048, 512, 128};
+
+    // MPEG is parsed frame by frame, the rest decoded by javax.sound
+    private static final Set<String> SUPPORTED_FORMATS = Set.of("mp3", "wav", "aiff", "aif", "au");
+
+    // PCM source points per second before bucketing
+    private static final int PCM_POINTS_PER_SECOND = 100;
+
+    @Value("${waveform.output-dir:./uploads/waveforms}")
+    private String outputDir;
+
+    @Autowired
+    private MediaJobQueue mediaJobQueue;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    // Generate after upload without holding up the request
+    public void generateInBackground(Path source) {
+        if (!isSupported(source)) return;
+        mediaJobQueue.submit("waveform " + source.getFileName(), () -> {
+            try {
+                generate(source);
+            } catch (IOException e) {
+                System.err.println("Error generating waveform for " + source + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Peaks file for the source, generated now if missing or older than the source
+    public Path generate(Path source) throws IOException {
+        Path peaksFile = peaksPathFor(source.getFileName().toString());
+        if (isFresh(peaksFile, source)) {
+            return peaksFile;
+        }
+
+        Envelope envelope = isMp3(source) ? readMp3Envelope(source) : readPcmEnvelope(source);
+        if (envelope.size() == 0) {
+            throw new IOException("No audio found in " + source);
+        }
+
+        Files.createDirectories(peaksFile.getParent());
+        Path tempFile = peaksFile.resolveSibling(UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                writePeaks(envelope, out);
+            }
+            try {
+                Files.move(tempFile, peaksFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, peaksFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return peaksFile;
+    }
+
+    // JSON view of a peaks file; picks the level closest to the requested bucket count
+    public Map<String, Object> readPeaks(Path peaksFile, Integer buckets) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(peaksFile)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a peaks file: " + peaksFile);
+            }
+            int durationMillis = in.readInt();
+            int levelCount = in.readShort();
+
+            List<Map<String, Object>> levels = new ArrayList<>();
+            for (int level = 0; level < levelCount; level++) {
+                int count = in.readInt();
+                int[] min = new int[count];
+                int[] max = new int[count];
+                for (int i = 0; i < count; i++) {
+                    min[i] = in.readByte();
+                    max[i] = in.readByte();
+                }
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("buckets", count);
+                entry.put("min", min);
+                entry.put("max", max);
+                levels.add(entry);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("durationMillis", durationMillis);
+            result.put("scale", 127);
+            if (buckets == null) {
+                result.put("levels", levels);
+            } else {
+                result.put("level", closestLevel(levels, buckets));
+            }
+            return result;
+        }
+    }
+
+    public boolean isSupported(Path source) {
+        String format = blobStoreService.formatOf(source);
+        return format != null && SUPPORTED_FORMATS.contains(format);
+    }
+
+    public Path peaksPathFor(String filename) {
+        Path root = Paths.get(outputDir).toAbsolutePath().normalize();
+        Path file = root.resolve(filename + PEAKS_SUFFIX).normalize();
+        if (!file.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid filename: " + filename);
+        }
+        return file;
+    }
+
+    private static boolean isFresh(Path peaksFile, Path source) throws IOException {
+        return Files.exists(peaksFile)
+            && Files.getLastModifiedTime(peaksFile).compareTo(Files.getLastModifiedTime(source)) >= 0;
+    }
+
+    private boolean isMp3(Path source) {
+        return "mp3".equals(blobStoreService.formatOf(source));
+    }
+
+    // One point per MPEG frame: the loudest granule's global_gain, scaled to 0..1 per track
+    private Envelope readMp3Envelope(Path source) throws IOException {
+        long size = Files.size(source);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large for waveform: " + source);
+        }
+
+        Envelope envelope = new Envelope();
+        long durationMicros = 0;
+        int lowestGain = Integer.MAX_VALUE;
+        int highestGain = 0;
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            Mp3FrameReader reader = new Mp3FrameReader(buffer);
+            while (reader.next()) {
+                durationMicros += reader.getFrameDurationMicros();
+                int gain = maxGlobalGain(buffer, reader.getFrameOffset(), reader.getFrameLength(), reader.getHeaderWord());
+                envelope.add(-gain, gain);
+                if (gain > 0) {
+                    lowestGain = Math.min(lowestGain, gain);
+                    highestGain = Math.max(highestGain, gain);
+                }
+            }
+        }
+
+        // global_gain is logarithmic (1.5 dB per step); map the track's range onto a linear bar height
+        float range = Math.max(1, highestGain - lowestGain);
+        for (int i = 0; i < envelope.size(); i++) {
+            float gain = envelope.max[i];
+            float level = gain <= 0 ? 0f : 0.05f + 0.95f * ((gain - lowestGain) / range);
+            envelope.min[i] = -level;
+            envelope.max[i] = level;
+        }
+        envelope.durationMillis = durationMicros / 1000;
+        return envelope;
+    }
+
+    // Highest global_gain over the granules/channels of a Layer III frame (0 for silent or other layers)
+    private static int maxGlobalGain(ByteBuffer buffer, int frameOffset, int frameLength, int header) {
+        int layerBits = (header >>> 17) & 0x03;
+        if (layerBits != 1) {
+            return 0; // not Layer III
+        }
+        boolean mpeg1 = ((header >>> 19) & 0x03) == 3;
+        boolean crc = ((header >>> 16) & 0x01) == 0;
+        int channels = ((header >>> 6) & 0x03) == 3 ? 1 : 2;
+
+        int sideInfoStart = frameOffset + 4 + (crc ? 2 : 0);
+        int sideInfoLength = mpeg1 ? (channels == 1 ? 17 : 32) : (channels == 1 ? 9 : 17);
+        if (sideInfoStart + sideInfoLength > frameOffset + frameLength) {
+            return 0;
+        }
+
+        // Skip main_data_begin, private bits and (MPEG-1) scfsi
+        int bit = mpeg1 ? 9 + (channels == 1 ? 5 : 3) + 4 * channels
+                        : 8 + (channels == 1 ? 1 : 2);
+        int granules = mpeg1 ? 2 : 1;
+        int entryBits = mpeg1 ? 59 : 63;
+
+        int max = 0;
+        for (int granule = 0; granule < granules; granule++) {
+            for (int channel = 0; channel < channels; channel++) {
+                int part23Length = readBits(buffer, sideInfoStart, bit, 12);
+                // part2_3_length (12) + big_values (9) precede global_gain
+                int globalGain = readBits(buffer, sideInfoStart, bit + 21, 8);
+                if (part23Length > 0) {
+                    max = Math.max(max, globalGain);
+                }
+                bit += entryBits;
+            }
+        }
+        return max;
+    }
+
+    private static int readBits(ByteBuffer buffer, int base, int bitOffset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int position = bitOffset + i;
+            int b = buffer.get(base + (position >>> 3)) & 0xFF;
+            value = (value << 1) | ((b >>> (7 - (position & 7))) & 1);
+        }
+        return value;
+    }
+
+    // PCM formats javax.sound can read: min/max per 10 ms
+    private Envelope readPcmEnvelope(Path source) throws IOException {
+        try (AudioInputStream audio = AudioSystem.getAudioInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            AudioFormat format = audio.getFormat();
+            AudioFormat.Encoding encoding = format.getEncoding();
+            int sampleBits = format.getSampleSizeInBits();
+            if ((!AudioFormat.Encoding.PCM_SIGNED.equals(encoding) && !AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding))
+                    || (sampleBits != 8 && sampleBits != 16 && sampleBits != 24)) {
+                throw new IOException("Unsupported PCM format: " + format);
+            }
+
+            int frameSize = format.getFrameSize();
+            int bytesPerSample = sampleBits / 8;
+            int channels = format.getChannels();
+            boolean signed = AudioFormat.Encoding.PCM_SIGNED.equals(encoding);
+            boolean bigEndian = format.isBigEndian();
+            float fullScale = (float) (1L << (sampleBits - 1));
+            int framesPerPoint = Math.max(1, Math.round(format.getFrameRate() / PCM_POINTS_PER_SECOND));
+
+            Envelope envelope = new Envelope();
+            byte[] chunk = new byte[frameSize * framesPerPoint];
+            long totalFrames = 0;
+            int read;
+            while ((read = readFully(audio, chunk)) > 0) {
+                int frames = read / frameSize;
+                float min = 0;
+                float max = 0;
+                for (int frame = 0; frame < frames; frame++) {
+                    for (int channel = 0; channel < channels; channel++) {
+                        int offset = frame * frameSize + channel * bytesPerSample;
+                        float sample = decodeSample(chunk, offset, bytesPerSample, signed, bigEndian) / fullScale;
+                        min = Math.min(min, sample);
+                        max = Math.max(max, sample);
+                    }
+                }
+                envelope.add(min, max);
+                totalFrames += frames;
+            }
+            envelope.durationMillis = (long) (totalFrames * 1000 / format.getFrameRate());
+            return envelope;
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio file: " + source, e);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] chunk) throws IOException {
+        int total = 0;
+        while (total < chunk.length) {
+            int n = in.read(chunk, total, chunk.length - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static int decodeSample(byte[] data, int offset, int bytes, boolean signed, boolean bigEndian) {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = data[offset + (bigEndian ? i : bytes - 1 - i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        int bits = bytes * 8;
+        if (signed) {
+            value = (value << (32 - bits)) >> (32 - bits); // sign-extend
+        } else {
+            value -= 1 << (bits - 1);
+        }
+        return value;
+    }
+
+    private static void writePeaks(Envelope envelope, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target));
+        out.write(MAGIC);
+        out.writeInt((int) Math.min(Integer.MAX_VALUE, envelope.durationMillis));
+        out.writeShort(LEVEL_BUCKETS.length);
+
+        int points = envelope.size();
+        for (int levelBuckets : LEVEL_BUCKETS) {
+            int count = Math.min(levelBuckets, points);
+            out.writeInt(count);
+            for (int bucket = 0; bucket < count; bucket++) {
+                int from = (int) ((long) bucket * points / count);
+                int to = (int) ((long) (bucket + 1) * points / count);
+                float min = 0;
+                float max = 0;
+                for (int i = from; i < to; i++) {
+                    min = Math.min(min, envelope.min[i]);
+                    max = Math.max(max, envelope.max[i]);
+                }
+                out.writeByte(quantize(min));
+                out.writeByte(quantize(max));
+            }
+        }
+        out.flush();
+    }
+
+    private static int quantize(float value) {
+        return Math.round(Math.max(-1f, Math.min(1f, value)) * 127);
+    }
+
+    private static Map<String, Object> closestLevel(List<Map<String, Object>> levels, int buckets) {
+        Map<String, Object> best = levels.get(0);
+        for (Map<String, Object> level : levels) {
+            int count = (int) level.get("buckets");
+            // Smallest level that still has at least the requested resolution
+            if (count >= buckets && count < (int) best.get("buckets")) {
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    // Growable min/max series before bucketing
+    private static final class Envelope {
+        private float[] min = new float[1024];
+        private float[] max = new float[1024];
+        private int size;
+        private long durationMillis;
+
+        private void add(float low, float high) {
+            if (size == min.length) {
+                min = Arrays.copyOf(min, size * 2);
+                max = Arrays.copyOf(max, size * 2);
+            }
+            min[size] = low;
+            max[size] = high;
+            size++;
+        }
+
+        private int size() {
+            return size;
+        }
+    }
+}
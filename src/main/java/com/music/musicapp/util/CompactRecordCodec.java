@@ -0,0 +1,355 @@
+package com.music.musicapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding for the {@code List<Map<String, Object>>} payloads the
+ * cache holds (search results, trending lists, episode lists).
+ *
+ * Field names are written once in a dictionary at the front and referenced by
+ * index, short string values (artist, source, genre) are interned the first
+ * time they appear and back-referenced after that, and numbers are varints.
+ * A search result row takes roughly a third of its Java-serialized size and
+ * far less than the boxed HashMap it decodes to; decoded rows share one
+ * instance of each field name. Values may be null, Boolean, Integer, Long, Float,
+ * Double, String, List or Map with String keys; anything else is rejected with
+ * IllegalArgumentException so callers can fall back to another format.
+ */
+public final class CompactRecordCodec {
+
+    private static final byte MAGIC = (byte) 0xC7;
+    private static final byte VERSION = 1;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_STRING = 7;        // not interned
+    private static final int TAG_STRING_NEW = 8;    // interned; takes the next value index
+    private static final int TAG_STRING_REF = 9;
+    private static final int TAG_LIST = 10;
+    private static final int TAG_MAP = 11;
+
+    private static final int MAX_INTERNED_LENGTH = 64;
+    private static final int MAX_DEPTH = 32;
+
+    private CompactRecordCodec() {
+    }
+
+    public static byte[] encode(List<Map<String, Object>> records) {
+        // Field names first, so the decoder can build its dictionary before the rows
+        Map<String, Integer> fields = new HashMap<>();
+        for (Map<String, Object> record : records) {
+            if (record == null) {
+                throw new IllegalArgumentException("Null record in payload");
+            }
+            collectFields(record, fields, 0);
+        }
+        String[] names = new String[fields.size()];
+        fields.forEach((name, index) -> names[index] = name);
+
+        Output out = new Output(64 + records.size() * 64);
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarInt(names.length);
+        for (String name : names) {
+            out.writeString(name);
+        }
+        out.writeVarInt(records.size());
+        Map<String, Integer> interned = new HashMap<>();
+        for (Map<String, Object> record : records) {
+            writeMap(out, record, fields, interned, 0);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Map<String, Object>> decode(byte[] encoded) {
+        Input in = new Input(encoded);
+        if (in.readByte() != MAGIC || in.readByte() != VERSION) {
+            throw new IllegalArgumentException("Not a compact record payload");
+        }
+        String[] names = new String[in.readVarInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readString();
+        }
+        int count = in.readVarInt();
+        List<Map<String, Object>> records = new ArrayList<>(count);
+        List<String> interned = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (in.readVarInt() != TAG_MAP) {
+                throw new IllegalArgumentException("Corrupt compact record payload");
+            }
+            records.add(readMap(in, names, interned, 0));
+        }
+        return records;
+    }
+
+    private static void collectFields(Object value, Map<String, Integer> fields, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Payload nested deeper than " + MAX_DEPTH);
+        }
+        if (value instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String name)) {
+                    throw new IllegalArgumentException("Map key is not a String: " + entry.getKey());
+                }
+                fields.putIfAbsent(name, fields.size());
+                collectFields(entry.getValue(), fields, depth + 1);
+            }
+        } else if (value instanceof List<?> list) {
+            for (Object element : list) {
+                collectFields(element, fields, depth + 1);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(Output out, Object value, Map<String, Integer> fields,
+                                   Map<String, Integer> interned, int depth) {
+        if (value == null) {
+            out.writeVarInt(TAG_NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeVarInt(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer number) {
+            out.writeVarInt(TAG_INT);
+            out.writeVarLong(zigZag(number));
+        } else if (value instanceof Long number) {
+            out.writeVarInt(TAG_LONG);
+            out.writeVarLong(zigZag(number));
+        } else if (value instanceof Float number) {
+            out.writeVarInt(TAG_FLOAT);
+            out.writeInt(Float.floatToIntBits(number));
+        } else if (value instanceof Double number) {
+            out.writeVarInt(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(number));
+        } else if (value instanceof String text) {
+            writeText(out, text, interned);
+        } else if (value instanceof List<?> list) {
+            out.writeVarInt(TAG_LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element, fields, interned, depth + 1);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(out, (Map<String, Object>) map, fields, interned, depth);
+        } else {
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeMap(Output out, Map<String, Object> map, Map<String, Integer> fields,
+                                 Map<String, Integer> interned, int depth) {
+        out.writeVarInt(TAG_MAP);
+        out.writeVarInt(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            out.writeVarInt(fields.get(entry.getKey()));
+            writeValue(out, entry.getValue(), fields, interned, depth + 1);
+        }
+    }
+
+    private static void writeText(Output out, String text, Map<String, Integer> interned) {
+        if (text.length() > MAX_INTERNED_LENGTH) {
+            out.writeVarInt(TAG_STRING);
+            out.writeString(text);
+            return;
+        }
+        Integer index = interned.get(text);
+        if (index != null) {
+            out.writeVarInt(TAG_STRING_REF);
+            out.writeVarInt(index);
+        } else {
+            interned.put(text, interned.size());
+            out.writeVarInt(TAG_STRING_NEW);
+            out.writeString(text);
+        }
+    }
+
+    private static Object readValue(Input in, String[] names, List<String> interned, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Corrupt compact record payload");
+        }
+        int tag = in.readVarInt();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return (int) unZigZag(in.readVarLong());
+            case TAG_LONG:
+                return unZigZag(in.readVarLong());
+            case TAG_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TAG_STRING:
+                return in.readString();
+            case TAG_STRING_NEW:
+                String text = in.readString();
+                interned.add(text);
+                return text;
+            case TAG_STRING_REF:
+                return interned.get(in.readVarInt());
+            case TAG_LIST:
+                int size = in.readVarInt();
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, names, interned, depth + 1));
+                }
+                return list;
+            case TAG_MAP:
+                return readMap(in, names, interned, depth);
+            default:
+                throw new IllegalArgumentException("Corrupt compact record payload (tag " + tag + ")");
+        }
+    }
+
+    private static Map<String, Object> readMap(Input in, String[] names, List<String> interned, int depth) {
+        int size = in.readVarInt();
+        Map<String, Object> map = new HashMap<>(Math.max(4, (int) (Math.min(size, 1024) / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            String name = names[in.readVarInt()];
+            map.put(name, readValue(in, names, interned, depth + 1));
+        }
+        return map;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+        private byte[] buffer;
+        private int position;
+
+        private Output(int initialCapacity) {
+            buffer = new byte[Math.max(64, initialCapacity)];
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeString(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private void require(int bytes) {
+            if (bytes < 0 || position + bytes > buffer.length) {
+                throw new IllegalArgumentException("Truncated compact record payload");
+            }
+        }
+
+        private byte readByte() {
+            require(1);
+            return buffer[position++];
+        }
+
+        private int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Corrupt compact record payload (varint)");
+        }
+
+        private int readInt() {
+            require(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            require(length);
+            String text = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+    }
+}
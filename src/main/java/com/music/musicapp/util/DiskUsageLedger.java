@@ -0,0 +1,137 @@
+package com.music.musicapp.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Running total of bytes on disk per namespace (one subdirectory each), so
+ * size checks and stats never walk the tree.
+ *
+ * Callers record every file they write or delete. Files are kept in access
+ * order (reads call {@link #touch}), which makes choosing eviction victims a
+ * walk from the least recently used end instead of sorting a listing by mtime.
+ * Writes that bypass the ledger are picked up by {@link #reconcile}.
+ */
+public class DiskUsageLedger {
+
+    private final LinkedHashMap<Path, Entry> files = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Long> bytesByNamespace = new HashMap<>();
+    private long totalBytes;
+
+    public synchronized void record(String namespace, Path file, long size) {
+        Entry previous = files.put(key(file), new Entry(namespace, size));
+        if (previous != null) {
+            adjust(previous.namespace, -previous.size);
+        }
+        adjust(namespace, size);
+    }
+
+    public synchronized void remove(Path file) {
+        Entry previous = files.remove(key(file));
+        if (previous != null) {
+            adjust(previous.namespace, -previous.size);
+        }
+    }
+
+    // Mark a file as just used
+    public synchronized void touch(Path file) {
+        files.get(key(file));
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized Map<String, Long> bytesByNamespace() {
+        return new HashMap<>(bytesByNamespace);
+    }
+
+    // Least recently used files of the given namespaces, oldest first, until their sizes cover the target
+    public synchronized List<Path> evictionCandidates(List<String> namespaces, long bytesToFree) {
+        List<Path> candidates = new ArrayList<>();
+        long covered = 0;
+        Iterator<Map.Entry<Path, Entry>> iterator = files.entrySet().iterator();
+        while (covered < bytesToFree && iterator.hasNext()) {
+            Map.Entry<Path, Entry> file = iterator.next();
+            if (namespaces.contains(file.getValue().namespace)) {
+                candidates.add(file.getKey());
+                covered += file.getValue().size;
+            }
+        }
+        return candidates;
+    }
+
+    public synchronized void clear() {
+        files.clear();
+        bytesByNamespace.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Rebuild a namespace from its directory. Files already known keep their
+     * place in the access order; new ones are added as least recently used,
+     * ordered by modification time.
+     */
+    public void reconcile(String namespace, Path directory) throws IOException {
+        Map<Path, BasicFileAttributes> found = new HashMap<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) walk::iterator) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.isRegularFile()) {
+                            found.put(key(file), attributes);
+                        }
+                    } catch (IOException e) {
+                        // removed while walking
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            LinkedHashMap<Path, Entry> reordered = new LinkedHashMap<>(files.size() + found.size(), 0.75f, true);
+            found.entrySet().stream()
+                .filter(file -> !files.containsKey(file.getKey()))
+                .sorted(Map.Entry.comparingByValue((a, b) -> a.lastModifiedTime().compareTo(b.lastModifiedTime())))
+                .forEach(file -> reordered.put(file.getKey(), new Entry(namespace, file.getValue().size())));
+            for (Map.Entry<Path, Entry> file : files.entrySet()) {
+                Entry entry = file.getValue();
+                if (!entry.namespace.equals(namespace)) {
+                    reordered.put(file.getKey(), entry);
+                } else if (found.containsKey(file.getKey())) {
+                    reordered.put(file.getKey(), new Entry(namespace, found.get(file.getKey()).size()));
+                }
+            }
+
+            files.clear();
+            files.putAll(reordered);
+            bytesByNamespace.clear();
+            totalBytes = 0;
+            for (Entry entry : files.values()) {
+                adjust(entry.namespace, entry.size);
+            }
+        }
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private void adjust(String namespace, long delta) {
+        bytesByNamespace.merge(namespace, delta, Long::sum);
+        totalBytes += delta;
+    }
+
+    private record Entry(String namespace, long size) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.music.musicapp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled access counts of cache keys, kept small enough to snapshot to disk
+ * and replay after a restart.
+ *
+ * Only one access in sampleRate is counted, so recording is usually a random
+ * draw and nothing else. The table holds at most twice maxKeys entries; when
+ * it overflows, or on {@link #decay}, every count is halved and the zeros are
+ * dropped, so the log follows what is hot now rather than what was hot once.
+ * {@link #encode}/{@link #decode} give the snapshot form: the top maxKeys
+ * keys with their counts.
+ */
+public class HotKeyLog {
+
+    private static final byte FORMAT = 1;
+
+    private final int sampleRate;
+    private final int maxKeys;
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    public HotKeyLog(int sampleRate, int maxKeys) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    public void record(String key) {
+        if (key.length() > 1024) return; // not worth a snapshot slot, and past writeUTF's limit
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return;
+        counts.merge(key, 1, Integer::sum);
+        if (counts.size() > maxKeys * 2) {
+            decay();
+        }
+    }
+
+    // Halve every count, dropping keys that reach zero
+    public synchronized void decay() {
+        counts.replaceAll((key, count) -> count / 2);
+        counts.values().removeIf(count -> count == 0);
+    }
+
+    // Hottest keys first
+    public List<String> top(int limit) {
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+            .limit(Math.max(0, limit))
+            .map(Map.Entry::getKey)
+            .toList();
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    public byte[] encode() {
+        List<Map.Entry<String, Integer>> hottest = counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+            .limit(maxKeys)
+            .toList();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + hottest.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(hottest.size());
+            for (Map.Entry<String, Integer> entry : hottest) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    // Merge a snapshot into the counts; returns false if it is not one this version understands
+    public boolean decode(byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readByte() != FORMAT) return false;
+            int size = in.readInt();
+            for (int i = 0; i < size && i < maxKeys; i++) {
+                counts.merge(in.readUTF(), Math.max(1, in.readInt()), Integer::sum);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.music.musicapp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed-size key/value store in one memory-mapped file, used as an off-heap
+ * second tier below the heap cache.
+ *
+ * The file holds a header, an open-addressing index (linear probing, 24-byte
+ * slots of key hash, record offset, hit count and length) and a data ring.
+ * Records ({@code crc | keyLength | valueLength | key | value}) are appended
+ * at a 64-bit logical head that wraps around the ring, so writing never needs
+ * an eviction pass: a record is live while it lies within the last ring-size
+ * bytes written, and the oldest data is simply overwritten. Index slots that
+ * point at overwritten records are reused like tombstones and dropped when the
+ * index is rebuilt; if the index fills up with small live records, a floor
+ * offset is raised past the oldest quarter of them. Index, head and floor live
+ * in the mapping, so the contents survive a restart; each record's CRC catches
+ * anything torn by a crash.
+ */
+public class MappedArena implements Closeable {
+
+    private static final int MAGIC = 0x4d415231; // "MAR1"
+    private static final int HEADER = 64;
+    private static final int SLOT = 24;
+    private static final int RECORD_HEADER = 12;
+    private static final long TOMBSTONE = -1;
+    private static final int HEAD_OFFSET = 24;
+    private static final int FLOOR_OFFSET = 32;
+    private static final double MAX_LOAD = 0.75;
+
+    private final Path file;
+    private final int slotCount;
+    private final long dataSize;
+    private final int dataStart;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    private long head;
+    private long floor; // records below this logical offset count as evicted
+    private int occupiedSlots;
+
+    private long hits;
+    private long misses;
+    private long puts;
+    private long rejections;
+    private long indexRebuilds;
+
+    // Reads of a stored value, with how often it has been read since it was written
+    public record Hit(byte[] value, int hits) {
+    }
+
+    public MappedArena(Path file, long capacityBytes) throws IOException {
+        this.file = file;
+        // Index sized for records of ~512 bytes and up; the whole mapping must stay under 2 GB
+        long dataBytes = Math.max(1024 * 1024, Math.min(capacityBytes, 1536L * 1024 * 1024));
+        this.slotCount = Integer.highestOneBit((int) Math.max(1024, dataBytes / 512)) << 1;
+        this.dataSize = dataBytes;
+        this.dataStart = HEADER + slotCount * SLOT;
+        long fileSize = dataStart + dataSize;
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.raf = new RandomAccessFile(file.toFile(), "rw");
+        boolean reuse = raf.length() == fileSize;
+        if (!reuse) {
+            raf.setLength(0);
+            raf.setLength(fileSize);
+        }
+        this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+        if (reuse && buffer.getInt(0) == MAGIC && buffer.getInt(4) == slotCount && buffer.getLong(8) == dataSize) {
+            head = buffer.getLong(HEAD_OFFSET);
+            floor = buffer.getLong(FLOOR_OFFSET);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (slotHash(slot) != 0) occupiedSlots++;
+            }
+        } else {
+            clear();
+        }
+    }
+
+    public synchronized Hit get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(keyBytes, hash(keyBytes));
+        if (slot < 0) {
+            misses++;
+            return null;
+        }
+        long offset = slotOffset(slot);
+        int keyLength = buffer.getInt(physical(offset) + 4);
+        int valueLength = buffer.getInt(physical(offset) + 8);
+        byte[] value = new byte[valueLength];
+        buffer.get(physical(offset) + RECORD_HEADER + keyLength, value);
+
+        int slotHits = buffer.getInt(slotPosition(slot) + 16);
+        if (slotHits < Integer.MAX_VALUE) {
+            buffer.putInt(slotPosition(slot) + 16, ++slotHits);
+        }
+        hits++;
+        return new Hit(value, slotHits);
+    }
+
+    public synchronized boolean contains(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return find(keyBytes, hash(keyBytes)) >= 0;
+    }
+
+    // Store the value, replacing any older one; false if it is too large for the ring or the index is full
+    public synchronized boolean put(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + keyBytes.length + value.length;
+        if (length > dataSize / 4) {
+            rejections++;
+            return false;
+        }
+
+        long hash = hash(keyBytes);
+        int slot = slotFor(keyBytes, hash);
+        if (slot < 0 || (slotHash(slot) == 0 && occupiedSlots + 1 > slotCount * MAX_LOAD)) {
+            rebuildIndex();
+            slot = slotFor(keyBytes, hash);
+            if (slot < 0) {
+                rejections++;
+                return false;
+            }
+        }
+
+        long offset = append(keyBytes, value, length);
+        if (slotHash(slot) == 0) {
+            occupiedSlots++;
+        }
+        writeSlot(slot, hash, offset, 0, length);
+        puts++;
+        return true;
+    }
+
+    public synchronized void remove(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(keyBytes, hash(keyBytes));
+        if (slot >= 0) {
+            buffer.putLong(slotPosition(slot) + 8, TOMBSTONE);
+        }
+    }
+
+    public synchronized void clear() {
+        zero(HEADER, dataStart - HEADER);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, slotCount);
+        buffer.putLong(8, dataSize);
+        head = 0;
+        floor = 0;
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(FLOOR_OFFSET, floor);
+        occupiedSlots = 0;
+    }
+
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    // Bytes the arena occupies on disk (it is allocated up front)
+    public long fileSize() {
+        return dataStart + dataSize;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long requests = hits + misses;
+        stats.put("file", file.toString());
+        stats.put("capacityBytes", dataSize);
+        stats.put("bytesWritten", head);
+        stats.put("indexSlots", slotCount);
+        stats.put("occupiedSlots", occupiedSlots);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+        stats.put("puts", puts);
+        stats.put("rejections", rejections);
+        stats.put("indexRebuilds", indexRebuilds);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        raf.close(); // the mapping itself is released when the buffer is collected
+    }
+
+    // Slot holding the live record for the key, or -1
+    private int find(byte[] keyBytes, long hash) {
+        int slot = (int) (mix(hash) & (slotCount - 1));
+        for (int probes = 0; probes < slotCount; probes++) {
+            long slotHash = slotHash(slot);
+            if (slotHash == 0) return -1;
+            if (slotHash == hash) {
+                long offset = slotOffset(slot);
+                if (offset != TOMBSTONE && isLive(offset) && recordMatches(offset, keyBytes)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+        return -1;
+    }
+
+    // Slot to write the key into: its current slot, else the first reusable one on its probe path
+    private int slotFor(byte[] keyBytes, long hash) {
+        int slot = (int) (mix(hash) & (slotCount - 1));
+        int reusable = -1;
+        for (int probes = 0; probes < slotCount; probes++) {
+            long slotHash = slotHash(slot);
+            if (slotHash == 0) {
+                return reusable >= 0 ? reusable : slot;
+            }
+            long offset = slotOffset(slot);
+            boolean dead = offset == TOMBSTONE || !isLive(offset);
+            if (!dead && slotHash == hash && recordMatches(offset, keyBytes)) {
+                return slot;
+            }
+            if (dead && reusable < 0) {
+                reusable = slot;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+        return reusable;
+    }
+
+    private long append(byte[] keyBytes, byte[] value, int length) {
+        long position = head % dataSize;
+        if (position + length > dataSize) {
+            // Records never straddle the end of the ring; the tail is skipped
+            head += dataSize - position;
+            position = 0;
+        }
+
+        long offset = head;
+        int at = (int) (dataStart + position);
+        buffer.putInt(at + 4, keyBytes.length);
+        buffer.putInt(at + 8, value.length);
+        buffer.put(at + RECORD_HEADER, keyBytes);
+        buffer.put(at + RECORD_HEADER + keyBytes.length, value);
+        buffer.putInt(at, crc(at + 4, length - 4));
+
+        head += length;
+        buffer.putLong(HEAD_OFFSET, head);
+        return offset;
+    }
+
+    /**
+     * Re-insert the live entries into a clean index, dropping tombstones and
+     * overwritten records. If live entries alone would still crowd the index,
+     * the oldest quarter of them is evicted by raising the floor.
+     */
+    private void rebuildIndex() {
+        long[] live = new long[occupiedSlots * 3];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            long slotHash = slotHash(slot);
+            long offset = slotOffset(slot);
+            if (slotHash != 0 && offset != TOMBSTONE && isLive(offset)) {
+                int position = slotPosition(slot);
+                live[count * 3] = slotHash;
+                live[count * 3 + 1] = offset;
+                live[count * 3 + 2] = ((long) buffer.getInt(position + 16) << 32) | (buffer.getInt(position + 20) & 0xFFFFFFFFL);
+                count++;
+            }
+        }
+
+        if (count + 1 > slotCount * MAX_LOAD * 0.9) {
+            long[] offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = live[i * 3 + 1];
+            }
+            Arrays.sort(offsets);
+            floor = offsets[count / 4];
+            buffer.putLong(FLOOR_OFFSET, floor);
+        }
+
+        zero(HEADER, dataStart - HEADER);
+        occupiedSlots = 0;
+        for (int i = 0; i < count; i++) {
+            if (!isLive(live[i * 3 + 1])) continue;
+            int slot = (int) (mix(live[i * 3]) & (slotCount - 1));
+            while (slotHash(slot) != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            writeSlot(slot, live[i * 3], live[i * 3 + 1], (int) (live[i * 3 + 2] >>> 32), (int) live[i * 3 + 2]);
+            occupiedSlots++;
+        }
+        indexRebuilds++;
+    }
+
+    private boolean isLive(long offset) {
+        return offset >= head - dataSize && offset >= floor && offset < head;
+    }
+
+    private boolean recordMatches(long offset, byte[] keyBytes) {
+        int at = physical(offset);
+        int keyLength = buffer.getInt(at + 4);
+        int valueLength = buffer.getInt(at + 8);
+        if (keyLength != keyBytes.length || valueLength < 0
+                || (offset % dataSize) + RECORD_HEADER + keyLength + valueLength > dataSize) {
+            return false;
+        }
+        byte[] stored = new byte[keyLength];
+        buffer.get(at + RECORD_HEADER, stored);
+        return Arrays.equals(stored, keyBytes)
+            && buffer.getInt(at) == crc(at + 4, RECORD_HEADER - 4 + keyLength + valueLength);
+    }
+
+    private int crc(int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private void writeSlot(int slot, long hash, long offset, int slotHits, int length) {
+        int position = slotPosition(slot);
+        buffer.putLong(position, hash);
+        buffer.putLong(position + 8, offset);
+        buffer.putInt(position + 16, slotHits);
+        buffer.putInt(position + 20, length);
+    }
+
+    private long slotHash(int slot) {
+        return buffer.getLong(slotPosition(slot));
+    }
+
+    private long slotOffset(int slot) {
+        return buffer.getLong(slotPosition(slot) + 8);
+    }
+
+    private int slotPosition(int slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private int physical(long offset) {
+        return (int) (dataStart + offset % dataSize);
+    }
+
+    private void zero(int position, int length) {
+        byte[] zeros = new byte[64 * 1024];
+        for (int done = 0; done < length; done += zeros.length) {
+            buffer.put(position + done, zeros, 0, Math.min(zeros.length, length - done));
+        }
+    }
+
+    // FNV-1a; zero marks an empty slot, so it is never returned
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : keyBytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+}
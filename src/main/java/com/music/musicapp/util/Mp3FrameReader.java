@@ -0,0 +1,177 @@
+package com.music.musicapp.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the MPEG audio frames of an MP3 held in a ByteBuffer.
+ *
+ * The reader skips a leading ID3v2 tag and any junk between frames, and only
+ * accepts a frame header when the next frame also starts with a sync word, so
+ * stray 0xFFE bit patterns inside tags or album art are not mistaken for audio.
+ * It allocates nothing per frame:
+ *
+ * <pre>
+ * Mp3FrameReader reader = new Mp3FrameReader(buffer);
+ * while (reader.next()) {
+ *     reader.getFrameOffset(); reader.getFrameLength(); reader.getFrameDurationMicros();
+ * }
+ * </pre>
+ */
+public class Mp3FrameReader {
+
+    // [version][layer][index] in kbps; version 0 = MPEG1, 1 = MPEG2/2.5; layer 0 = I, 1 = II, 2 = III
+    private static final int[][][] BITRATES = {
+        {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+        },
+        {
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+        }
+    };
+
+    // [versionBits] -> sample rates; versionBits 0 = MPEG2.5, 2 = MPEG2, 3 = MPEG1
+    private static final int[][] SAMPLE_RATES = {
+        {11025, 12000, 8000},
+        null,
+        {22050, 24000, 16000},
+        {44100, 48000, 32000}
+    };
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    private int frameOffset = -1;
+    private int frameLength;
+    private int headerWord;
+    private int sampleRate;
+    private int samplesPerFrame;
+    private int bitrateKbps;
+
+    public Mp3FrameReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.position = skipId3v2(buffer);
+    }
+
+    // Advance to the next valid frame; false once the audio data is exhausted
+    public boolean next() {
+        int candidate = frameOffset < 0 ? position : frameOffset + frameLength;
+
+        while (candidate + 4 <= limit) {
+            if (parseHeader(candidate)) {
+                int nextOffset = candidate + frameLength;
+                // Accept the last frame in the file, otherwise require a sync word right after it
+                if (nextOffset > limit) {
+                    break; // truncated trailing frame
+                }
+                if (nextOffset + 2 > limit || isSync(nextOffset)) {
+                    frameOffset = candidate;
+                    return true;
+                }
+            }
+            candidate++;
+        }
+
+        frameOffset = limit;
+        frameLength = 0;
+        return false;
+    }
+
+    private boolean parseHeader(int offset) {
+        if (!isSync(offset)) {
+            return false;
+        }
+
+        int b1 = buffer.get(offset + 1) & 0xFF;
+        int b2 = buffer.get(offset + 2) & 0xFF;
+        int b3 = buffer.get(offset + 3) & 0xFF;
+
+        int versionBits = (b1 >> 3) & 0x03;
+        int layerBits = (b1 >> 1) & 0x03;
+        int bitrateIndex = (b2 >> 4) & 0x0F;
+        int sampleRateIndex = (b2 >> 2) & 0x03;
+        int padding = (b2 >> 1) & 0x01;
+
+        // Reserved version/layer, free-format or bad bitrate, reserved sample rate
+        if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return false;
+        }
+
+        boolean mpeg1 = versionBits == 3;
+        int layer = 3 - layerBits; // 0 = I, 1 = II, 2 = III
+        int kbps = BITRATES[mpeg1 ? 0 : 1][layer][bitrateIndex];
+        int rate = SAMPLE_RATES[versionBits][sampleRateIndex];
+
+        int samples;
+        int length;
+        if (layer == 0) {
+            samples = 384;
+            length = (12 * kbps * 1000 / rate + padding) * 4;
+        } else {
+            samples = (layer == 2 && !mpeg1) ? 576 : 1152;
+            length = (samples / 8) * kbps * 1000 / rate + padding;
+        }
+        if (length < 4) {
+            return false;
+        }
+
+        headerWord = ((buffer.get(offset) & 0xFF) << 24) | (b1 << 16) | (b2 << 8) | b3;
+        frameLength = length;
+        sampleRate = rate;
+        samplesPerFrame = samples;
+        bitrateKbps = kbps;
+        return true;
+    }
+
+    private boolean isSync(int offset) {
+        return (buffer.get(offset) & 0xFF) == 0xFF && (buffer.get(offset + 1) & 0xE0) == 0xE0;
+    }
+
+    // Size of a leading ID3v2 tag (syncsafe length plus header and optional footer)
+    private static int skipId3v2(ByteBuffer buffer) {
+        if (buffer.limit() < 10
+                || buffer.get(0) != 'I' || buffer.get(1) != 'D' || buffer.get(2) != '3') {
+            return 0;
+        }
+        int size = ((buffer.get(6) & 0x7F) << 21)
+                 | ((buffer.get(7) & 0x7F) << 14)
+                 | ((buffer.get(8) & 0x7F) << 7)
+                 | (buffer.get(9) & 0x7F);
+        boolean footer = (buffer.get(5) & 0x10) != 0;
+        return Math.min(buffer.limit(), 10 + size + (footer ? 10 : 0));
+    }
+
+    public int getFrameOffset() {
+        return frameOffset;
+    }
+
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    // Raw 32-bit frame header, for callers that need the channel mode or other flags
+    public int getHeaderWord() {
+        return headerWord;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    public int getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    public long getFrameDurationMicros() {
+        return samplesPerFrame * 1_000_000L / sampleRate;
+    }
+}
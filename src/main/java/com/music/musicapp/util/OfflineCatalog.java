@@ -0,0 +1,141 @@
+package com.music.musicapp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Tracks saved for offline and whether their audio is on disk, updated as
+ * tracks are saved, downloads complete and files are evicted, so listing and
+ * checks never scan the cache.
+ *
+ * Lookups are hash map reads. Listing walks a sorted set of IDs from a cursor,
+ * so a page costs its own size rather than the catalog's. Every change is
+ * passed to a listener (null entry for a removal), which the owner uses to
+ * persist entries; {@link #encode}/{@link #decode} give the stored form.
+ */
+public class OfflineCatalog {
+
+    private static final byte FORMAT = 1;
+
+    // audioBytes is -1 while the track's audio is not on disk
+    public record Entry(String trackId, long savedAt, long audioBytes) {
+        public boolean hasAudio() {
+            return audioBytes >= 0;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<String> order = new ConcurrentSkipListSet<>();
+    private volatile BiConsumer<String, Entry> listener = (trackId, entry) -> { };
+
+    public void setListener(BiConsumer<String, Entry> listener) {
+        this.listener = listener;
+    }
+
+    // Saved for offline; audio state is kept if the track was already known
+    public synchronized void markSaved(String trackId) {
+        Entry current = entries.get(trackId);
+        update(new Entry(trackId, System.currentTimeMillis(), current != null ? current.audioBytes : -1));
+    }
+
+    public synchronized void markAudio(String trackId, long audioBytes) {
+        Entry current = entries.get(trackId);
+        if (current != null && current.audioBytes == audioBytes) return;
+        update(new Entry(trackId, current != null ? current.savedAt : System.currentTimeMillis(), audioBytes));
+    }
+
+    // Audio gone (evicted or deleted); the track stays listed as saved
+    public synchronized void clearAudio(String trackId) {
+        Entry current = entries.get(trackId);
+        if (current == null || !current.hasAudio()) return;
+        update(new Entry(trackId, current.savedAt, -1));
+    }
+
+    public synchronized void remove(String trackId) {
+        if (entries.remove(trackId) != null) {
+            order.remove(trackId);
+            listener.accept(trackId, null);
+        }
+    }
+
+    // Restore a persisted entry without notifying the listener
+    public synchronized void load(Entry entry) {
+        entries.put(entry.trackId, entry);
+        order.add(entry.trackId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        order.clear();
+    }
+
+    public boolean contains(String trackId) {
+        return entries.containsKey(trackId);
+    }
+
+    public boolean hasAudio(String trackId) {
+        Entry entry = entries.get(trackId);
+        return entry != null && entry.hasAudio();
+    }
+
+    public Entry get(String trackId) {
+        return entries.get(trackId);
+    }
+
+    // Up to limit track IDs in ID order, starting after the cursor (null for the first page)
+    public List<String> page(String after, int limit) {
+        NavigableSet<String> from = after == null ? order : order.tailSet(after, false);
+        List<String> page = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        for (String trackId : from) {
+            if (page.size() >= limit) break;
+            page.add(trackId);
+        }
+        return page;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long audioCount() {
+        return entries.values().stream().filter(Entry::hasAudio).count();
+    }
+
+    public static byte[] encode(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(entry.savedAt);
+            out.writeLong(entry.audioBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    // Null if the bytes are not a catalog entry this version understands
+    public static Entry decode(String trackId, byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readByte() != FORMAT) return null;
+            return new Entry(trackId, in.readLong(), in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void update(Entry entry) {
+        entries.put(entry.trackId, entry);
+        order.add(entry.trackId);
+        listener.accept(entry.trackId, entry);
+    }
+}
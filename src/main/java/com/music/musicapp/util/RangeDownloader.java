@@ -0,0 +1,475 @@
+package com.music.musicapp.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Downloads a URL into a file with parallel HTTP range requests, resuming
+ * from the partial file after an interruption.
+ *
+ * Bodies are written into {@code <target>.part} with FileChannel.transferFrom
+ * in fixed steps, so a file is never held in memory. When the server accepts
+ * ranges and reports a length, the file is split into chunks fetched by up to
+ * {@code parallelChunks} workers; finished chunks are recorded in a
+ * {@code .part.state} sidecar, so a retry fetches only what is missing, and
+ * If-Range makes the server answer with the whole body if the resource changed
+ * in between, in which case the partial file is abandoned. Servers without
+ * range support get a single streamed GET. The finished file is hashed with
+ * SHA-256, checked against the expected digest (the caller's, or a
+ * Repr-Digest/Digest header) and only then renamed to the target.
+ *
+ * Every URL requested, including each redirect target, is passed to the
+ * caller's check first (the RestTemplate must not follow redirects itself,
+ * see {@link #noRedirects}), and nothing larger than maxBytes is written.
+ */
+public class RangeDownloader {
+
+    // Bytes per transferFrom call; the socket is drained in these steps
+    private static final long TRANSFER_STEP = 1024 * 1024;
+    private static final int MAX_REDIRECTS = 5;
+
+    private final RestTemplate restTemplate;
+    private final Executor executor;
+    private final long chunkSize;
+    private final int parallelChunks;
+    private final long maxBytes;
+    private final Consumer<URI> urlCheck;
+
+    // urlCheck throws (any RuntimeException) to refuse a URL before it is requested
+    public RangeDownloader(RestTemplate restTemplate, Executor executor, long chunkSize, int parallelChunks,
+                           long maxBytes, Consumer<URI> urlCheck) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+        this.chunkSize = Math.max(64 * 1024, chunkSize);
+        this.parallelChunks = Math.max(1, parallelChunks);
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.urlCheck = urlCheck;
+    }
+
+    // Request factory for the RestTemplate: redirects come back as 3xx so each hop can be checked
+    public static SimpleClientHttpRequestFactory noRedirects() {
+        return new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                connection.setInstanceFollowRedirects(false);
+            }
+        };
+    }
+
+    public record Result(Path path, long size, String sha256) {
+    }
+
+    // Bytes received so far; readable from other threads while the download runs
+    public static final class Progress {
+        private volatile long totalBytes = -1;
+        private final AtomicLong receivedBytes = new AtomicLong();
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getReceivedBytes() {
+            return receivedBytes.get();
+        }
+    }
+
+    /**
+     * Download into target (replacing it) and return its size and SHA-256.
+     * expectedSha256 is optional hex; without it a digest header is used when
+     * the server sends one. On failure the partial file is kept for a resume,
+     * unless the checksum did not match.
+     */
+    public Result download(String url, Path target, String expectedSha256, Progress progress) throws IOException {
+        URI uri = URI.create(url);
+        Path part = sibling(target, ".part");
+        Path statePath = sibling(target, ".part.state");
+
+        Probe probe = probe(uri);
+        for (int redirects = 0; probe.location != null; redirects++) {
+            if (redirects >= MAX_REDIRECTS) {
+                throw new IOException("Too many redirects for " + url);
+            }
+            uri = uri.resolve(probe.location);
+            probe = probe(uri);
+        }
+        if (probe.length > maxBytes) {
+            throw new IOException("Remote file is " + probe.length + " bytes, over the " + maxBytes + " byte limit");
+        }
+        progress.totalBytes = probe.length;
+
+        if (probe.rangeable) {
+            try {
+                fetchChunks(uri, probe, part, statePath, progress, true);
+            } catch (ResourceChangedException e) {
+                // Changed under us between chunks: start over once from a clean file
+                System.err.println("Remote file changed during download, restarting: " + url);
+                probe = probe(uri);
+                if (probe.location != null || probe.length > maxBytes) {
+                    throw new IOException("Remote file changed to a redirect or an oversized body: " + url);
+                }
+                if (probe.rangeable) {
+                    fetchChunks(uri, probe, part, statePath, progress, false);
+                } else {
+                    Files.deleteIfExists(statePath);
+                    fetchWhole(uri, probe, part, progress);
+                }
+            }
+        } else {
+            Files.deleteIfExists(statePath);
+            fetchWhole(uri, probe, part, progress);
+        }
+
+        String sha256 = sha256(part);
+        String expected = expectedSha256 != null ? expectedSha256 : probe.sha256;
+        if (expected != null && !expected.equalsIgnoreCase(sha256)) {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(statePath);
+            throw new IOException("Checksum mismatch for " + url + ": expected " + expected + ", got " + sha256);
+        }
+
+        long size = Files.size(part);
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(statePath);
+        return new Result(target, size, sha256);
+    }
+
+    // A one-byte range request tells us the length, range support, validator and digest at once
+    private Probe probe(URI uri) throws IOException {
+        return execute(uri, request -> request.getHeaders().set(HttpHeaders.RANGE, "bytes=0-0"), response -> {
+            HttpHeaders headers = response.getHeaders();
+            String validator = headers.getETag();
+            if (validator == null || validator.startsWith("W/")) {
+                // If-Range needs a strong validator; a date is the fallback
+                validator = headers.getLastModified() > 0 ? headers.getFirst(HttpHeaders.LAST_MODIFIED) : null;
+            }
+            String sha256 = digestHeader(headers);
+
+            if (response.getStatusCode().is3xxRedirection()) {
+                String location = headers.getFirst(HttpHeaders.LOCATION);
+                if (location == null) {
+                    throw new IOException("Redirect without a Location from " + uri);
+                }
+                return new Probe(-1, false, null, null, URI.create(location));
+            }
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new IOException("Unexpected status " + response.getStatusCode().value() + " from " + uri);
+            }
+            if (response.getStatusCode().value() == 206) {
+                long length = totalFromContentRange(headers.getFirst(HttpHeaders.CONTENT_RANGE));
+                return new Probe(length, length > 0, validator, sha256, null);
+            }
+            // Range ignored: the body is the whole file, which must not be read just to be thrown away
+            abandonBody(response);
+            return new Probe(headers.getContentLength(), false, validator, sha256, null);
+        });
+    }
+
+    private void fetchChunks(URI uri, Probe probe, Path part, Path statePath,
+                             Progress progress, boolean resume) throws IOException {
+        int chunkCount = (int) ((probe.length + chunkSize - 1) / chunkSize);
+        ChunkState state = resume ? ChunkState.load(statePath) : null;
+        if (state == null || !state.matches(uri.toString(), probe, chunkSize) || !Files.exists(part)) {
+            Files.deleteIfExists(part);
+            state = new ChunkState(uri.toString(), probe.length, probe.validator, chunkSize, new BitSet(chunkCount));
+            state.save(statePath);
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        long received = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            if (state.done.get(i)) {
+                received += chunkLength(i, probe.length);
+            } else {
+                pending.add(i);
+            }
+        }
+        progress.totalBytes = probe.length;
+        progress.receivedBytes.set(received);
+        if (pending.isEmpty()) return;
+
+        ChunkState chunkState = state;
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(parallelChunks, pending.size()); w++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    int index;
+                    while (!aborted.get() && (index = next.getAndIncrement()) < pending.size()) {
+                        int chunk = pending.get(index);
+                        long start = chunk * chunkSize;
+                        long end = start + chunkLength(chunk, probe.length) - 1;
+                        try {
+                            fetchRange(uri, probe.validator, channel, start, end, progress, aborted);
+                            chunkState.markDone(chunk, statePath);
+                        } catch (IOException | RuntimeException e) {
+                            // The first failure is the one reported; the other workers stop at their next step
+                            failure.compareAndSet(null, e instanceof IOException io ? io : new IOException(e.getMessage(), e));
+                            aborted.set(true);
+                        }
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            channel.force(false);
+        }
+    }
+
+    private void fetchRange(URI uri, String validator, FileChannel channel, long start, long end,
+                            Progress progress, AtomicBoolean aborted) throws IOException {
+        execute(uri, request -> {
+            request.getHeaders().set(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+            if (validator != null) {
+                request.getHeaders().set(HttpHeaders.IF_RANGE, validator);
+            }
+        }, response -> {
+            if (response.getStatusCode().value() != 206) {
+                abandonBody(response);
+                throw new ResourceChangedException();
+            }
+            try (ReadableByteChannel in = Channels.newChannel(response.getBody())) {
+                long position = start;
+                while (position <= end) {
+                    if (aborted.get()) {
+                        throw new InterruptedIOException("Download aborted");
+                    }
+                    long transferred = channel.transferFrom(in, position, Math.min(TRANSFER_STEP, end + 1 - position));
+                    if (transferred <= 0) {
+                        throw new EOFException("Range " + start + "-" + end + " ended at " + position);
+                    }
+                    position += transferred;
+                    progress.receivedBytes.addAndGet(transferred);
+                }
+            }
+            return null;
+        });
+    }
+
+    private void fetchWhole(URI uri, Probe probe, Path part, Progress progress) throws IOException {
+        progress.receivedBytes.set(0);
+        execute(uri, request -> { }, response -> {
+            if (response.getStatusCode().value() != 200) {
+                throw new IOException("Unexpected status " + response.getStatusCode().value() + " from " + uri);
+            }
+            try (ReadableByteChannel in = Channels.newChannel(response.getBody());
+                 FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = channel.transferFrom(in, position, TRANSFER_STEP)) > 0) {
+                    position += transferred;
+                    progress.receivedBytes.addAndGet(transferred);
+                    if (position > maxBytes) {
+                        throw new IOException("Download exceeded the " + maxBytes + " byte limit");
+                    }
+                }
+                if (probe.length >= 0 && position != probe.length) {
+                    throw new EOFException("Expected " + probe.length + " bytes, got " + position);
+                }
+                channel.force(false);
+            }
+            return null;
+        });
+    }
+
+    // RestTemplate wraps I/O errors from extractors; hand them back as they were
+    private <T> T execute(URI uri, RequestCallback callback, ResponseExtractor<T> extractor) throws IOException {
+        urlCheck.accept(uri);
+        try {
+            return restTemplate.execute(uri, HttpMethod.GET, callback, extractor);
+        } catch (ResourceAccessException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Closing the response drains the rest of the body to reuse the connection, which on a full-body
+    // answer to a range request means downloading the whole file unmetered. Closing the body stream first
+    // leaves only HttpURLConnection's bounded keep-alive cleanup; past that it drops the connection.
+    private static void abandonBody(ClientHttpResponse response) {
+        try {
+            response.getBody().close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+    }
+
+    private long chunkLength(int chunk, long length) {
+        return Math.min(chunkSize, length - chunk * chunkSize);
+    }
+
+    private static long totalFromContentRange(String contentRange) {
+        // bytes 0-0/12345, or bytes 0-0/* when the length is unknown
+        if (contentRange == null) return -1;
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // SHA-256 of the full representation, from Repr-Digest (RFC 9530) or Digest (RFC 3230), as hex
+    private static String digestHeader(HttpHeaders headers) {
+        for (String header : List.of("Repr-Digest", "Digest")) {
+            String value = headers.getFirst(header);
+            if (value == null) continue;
+            for (String item : value.split(",")) {
+                int equals = item.indexOf('=');
+                if (equals < 0 || !item.substring(0, equals).trim().equalsIgnoreCase("sha-256")) continue;
+                String encoded = item.substring(equals + 1).trim().replace(":", "");
+                try {
+                    return HexFormat.of().formatHex(Base64.getDecoder().decode(encoded));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static Path sibling(Path target, String suffix) {
+        return target.resolveSibling(target.getFileName() + suffix);
+    }
+
+    // location is set (and nothing else) when the server redirected
+    private record Probe(long length, boolean rangeable, String validator, String sha256, URI location) {
+    }
+
+    // The server answered a ranged request with the whole body: the file changed since the probe
+    private static final class ResourceChangedException extends IOException {
+        private ResourceChangedException() {
+            super("Remote file changed");
+        }
+    }
+
+    // Sidecar of a partial download: what it is a copy of, and which chunks are on disk
+    private static final class ChunkState {
+        private final String url;
+        private final long length;
+        private final String validator;
+        private final long chunkSize;
+        private final BitSet done;
+
+        private ChunkState(String url, long length, String validator, long chunkSize, BitSet done) {
+            this.url = url;
+            this.length = length;
+            this.validator = validator;
+            this.chunkSize = chunkSize;
+            this.done = done;
+        }
+
+        // Only resume when we can tell the remote file is the same one
+        private boolean matches(String url, Probe probe, long chunkSize) {
+            return this.url.equals(url) && length == probe.length && this.chunkSize == chunkSize
+                && validator != null && validator.equals(probe.validator);
+        }
+
+        private synchronized void markDone(int chunk, Path statePath) throws IOException {
+            done.set(chunk);
+            save(statePath);
+        }
+
+        private synchronized void save(Path statePath) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            properties.setProperty("length", Long.toString(length));
+            properties.setProperty("chunkSize", Long.toString(chunkSize));
+            properties.setProperty("done", Base64.getEncoder().encodeToString(done.toByteArray()));
+            if (validator != null) {
+                properties.setProperty("validator", validator);
+            }
+            Path temp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private static ChunkState load(Path statePath) {
+            if (!Files.exists(statePath)) return null;
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(statePath)) {
+                properties.load(in);
+                return new ChunkState(properties.getProperty("url"),
+                    Long.parseLong(properties.getProperty("length")),
+                    properties.getProperty("validator"),
+                    Long.parseLong(properties.getProperty("chunkSize")),
+                    BitSet.valueOf(Base64.getDecoder().decode(properties.getProperty("done", ""))));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable download state " + statePath + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.music.musicapp.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key/value log split into numbered segment files.
+ *
+ * Every put or delete is appended to the active segment as one record
+ * ({@code crc | keyLength | valueLength | key | value}, value length -1 for a
+ * delete) and an in-memory index maps each key to the offset of its latest
+ * record. Opening the log replays the segments oldest first in one sequential
+ * read; a record whose CRC does not match (a torn write from a crash) ends its
+ * segment, which is truncated back to the last good record. Sealed segments
+ * that are mostly dead are compacted by copying their live records forward
+ * and deleting the file.
+ */
+public class SegmentLog implements Closeable {
+
+    private static final String SUFFIX = ".log";
+    private static final int HEADER = 12; // crc, key length, value length
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_KEY_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    public SegmentLog(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(1024 * 1024, segmentSize);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    // Latest value for the key, or null; a record that fails its CRC reads as absent
+    public byte[] get(String key) throws IOException {
+        Location location = index.get(key);
+        if (location == null) return null;
+
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(location.segmentId);
+        }
+        if (segment == null) return null; // compacted away concurrently; the caller retries as a miss
+
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        readFully(segment.channel, record, location.offset);
+        record.flip();
+        int crc = record.getInt();
+        if (crc != (int) checksum(record, 4, location.length - 4)) {
+            System.err.println("Corrupt cache log record for " + key + " in " + segment.path.getFileName());
+            index.remove(key, location);
+            return null;
+        }
+        int keyLength = record.getInt();
+        int valueLength = record.getInt();
+        byte[] value = new byte[valueLength];
+        record.position(HEADER + keyLength);
+        record.get(value);
+        return value;
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized void put(String key, byte[] value) throws IOException {
+        Location location = append(key, value);
+        Location previous = index.put(key, location);
+        release(previous);
+    }
+
+    public synchronized void delete(String key) throws IOException {
+        Location previous = index.remove(key);
+        if (previous == null) return;
+        release(previous);
+        append(key, null); // the old record would otherwise come back on recovery
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Bytes on disk across all segments
+    public synchronized long diskSize() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        return total;
+    }
+
+    /**
+     * Rewrite sealed segments whose live fraction fell below the threshold.
+     * Live records the predicate rejects (e.g. expired entries) are dropped.
+     * Returns the number of segments removed.
+     */
+    public synchronized int compact(double liveThreshold, BiPredicate<String, byte[]> retain) throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.liveBytes < segment.size * liveThreshold) {
+                candidates.add(segment);
+            }
+        }
+
+        int removed = 0;
+        for (Segment segment : candidates) {
+            boolean olderExists = hasSegmentBefore(segment.id);
+            scan(segment, (key, value, offset, length) -> {
+                Location current = index.get(key);
+                boolean live = current != null && current.segmentId == segment.id && current.offset == offset;
+                if (live && retain.test(key, value)) {
+                    index.put(key, append(key, value));
+                } else if (live) {
+                    index.remove(key);
+                    if (olderExists) append(key, null);
+                } else if (value == null && olderExists && current == null) {
+                    append(key, null); // still masking a record in an older segment
+                }
+            });
+            segments.remove(segment.id);
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            removed++;
+        }
+        if (removed > 0) {
+            active.channel.force(false);
+        }
+        return removed;
+    }
+
+    // Drop everything and start a fresh segment
+    public synchronized void clear() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+        segments.clear();
+        index.clear();
+        Files.createDirectories(directory);
+        active = openSegment(1);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (active != null) {
+            active.channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    // Replay every segment oldest first, rebuilding the index and live-byte counts
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (segmentId(file) > 0) files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(segmentId(a), segmentId(b)));
+
+        for (Path file : files) {
+            Segment segment = new Segment(segmentId(file), file,
+                FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segment.size = segment.channel.size();
+            segments.put(segment.id, segment);
+
+            long validEnd = scan(segment, (key, value, offset, length) -> {
+                Location previous = value == null ? index.remove(key) : index.put(key, new Location(segment.id, offset, length));
+                release(previous);
+                if (value != null) segment.liveBytes += length;
+            });
+            if (validEnd < segment.size) {
+                System.err.println("Truncating cache log " + file.getFileName() + " from " + segment.size + " to " + validEnd + " bytes");
+                segment.channel.truncate(validEnd);
+                segment.size = validEnd;
+            }
+        }
+
+        active = segments.isEmpty() ? openSegment(1) : segments.lastEntry().getValue();
+        if (active.size >= segmentSize) {
+            active = openSegment(active.id + 1);
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(String key, byte[] value, long offset, int length) throws IOException;
+    }
+
+    // Sequentially read a segment's valid records; returns the offset after the last good one
+    private long scan(Segment segment, RecordVisitor visitor) throws IOException {
+        long offset = 0;
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(segment.path), 256 * 1024);
+             DataInputStream in = new DataInputStream(raw)) {
+            CRC32 crc = new CRC32();
+            while (offset + HEADER <= segment.size) {
+                int storedCrc = in.readInt();
+                int keyLength = in.readInt();
+                int valueLength = in.readInt();
+                if (keyLength <= 0 || keyLength > MAX_KEY_BYTES || valueLength < TOMBSTONE) break;
+                long length = HEADER + (long) keyLength + Math.max(0, valueLength);
+                if (offset + length > segment.size) break;
+
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                byte[] value = valueLength == TOMBSTONE ? null : new byte[valueLength];
+                if (value != null) in.readFully(value);
+
+                crc.reset();
+                crc.update(ByteBuffer.allocate(8).putInt(keyLength).putInt(valueLength).array());
+                crc.update(keyBytes);
+                if (value != null) crc.update(value);
+                if ((int) crc.getValue() != storedCrc) break;
+
+                visitor.visit(new String(keyBytes, StandardCharsets.UTF_8), value, offset, (int) length);
+                offset += length;
+            }
+        } catch (EOFException e) {
+            // torn tail
+        }
+        return offset;
+    }
+
+    private Location append(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_BYTES) {
+            throw new IOException("Cache key too long for the log: " + keyBytes.length + " bytes");
+        }
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        int length = HEADER + keyBytes.length + Math.max(0, valueLength);
+        if (active.size > 0 && active.size + length > segmentSize) {
+            active.channel.force(false);
+            active = openSegment(active.id + 1);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0).putInt(keyBytes.length).putInt(valueLength).put(keyBytes);
+        if (value != null) record.put(value);
+        record.putInt(0, (int) checksum(record, 4, length - 4));
+        record.flip();
+
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += length;
+        if (value != null) active.liveBytes += length;
+        return new Location(active.id, offset, length);
+    }
+
+    // The superseded record no longer counts as live in its segment
+    private void release(Location previous) {
+        if (previous == null) return;
+        Segment segment = segments.get(previous.segmentId);
+        if (segment != null) {
+            segment.liveBytes -= previous.length;
+        }
+    }
+
+    private boolean hasSegmentBefore(long segmentId) {
+        return segments.lowerKey(segmentId) != null;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%08d%s", id, SUFFIX));
+        Segment segment = new Segment(id, file, FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segment.size = segment.channel.size();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer, int from, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + from, length);
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Cache log record past end of segment");
+            }
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private record Location(long segmentId, long offset, int length) {
+    }
+}
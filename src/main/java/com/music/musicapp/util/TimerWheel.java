@@ -0,0 +1,164 @@
+package com.music.musicapp.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel for key expiry, in wall-clock milliseconds.
+ *
+ * Five wheels of coarsening resolution (about 1 s, 65 s, 70 min and 18.6 h per
+ * bucket, plus one overflow bucket) hold intrusive linked lists of timers.
+ * Scheduling and cancelling are O(1); {@link #advance} only visits the buckets
+ * whose time has come and cascades longer timers down to finer wheels, so the
+ * cost is proportional to what actually expires, not to how many keys exist.
+ */
+public class TimerWheel<K> {
+
+    private static final int[] BUCKETS = {64, 64, 16, 4, 1};
+    private static final int[] SHIFT = {10, 16, 22, 26, 28};
+
+    private final Node<K>[][] wheel;
+    private final Map<K, Node<K>> timers = new HashMap<>();
+    private long currentTime;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long nowMillis) {
+        this.currentTime = nowMillis;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = Node.sentinel();
+            }
+        }
+    }
+
+    // (Re)schedule the key to expire at the given time
+    public synchronized void schedule(K key, long expiresAtMillis) {
+        Node<K> node = timers.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            timers.put(key, node);
+        } else {
+            node.unlink();
+        }
+        node.time = expiresAtMillis;
+        link(node);
+    }
+
+    public synchronized void cancel(K key) {
+        Node<K> node = timers.remove(key);
+        if (node != null) {
+            node.unlink();
+        }
+    }
+
+    public synchronized void clear() {
+        for (Node<K> node : timers.values()) {
+            node.unlink();
+        }
+        timers.clear();
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    // Move the clock forward and hand every key that expired to the callback (outside the lock)
+    public void advance(long nowMillis, Consumer<K> onExpire) {
+        List<K> expired = new ArrayList<>();
+        synchronized (this) {
+            long previous = currentTime;
+            if (nowMillis <= previous) return;
+            currentTime = nowMillis;
+
+            for (int level = 0; level < BUCKETS.length; level++) {
+                long previousTicks = previous >>> SHIFT[level];
+                long currentTicks = nowMillis >>> SHIFT[level];
+                if (currentTicks - previousTicks <= 0) {
+                    break; // coarser wheels have not moved either
+                }
+                expire(level, previousTicks, currentTicks, expired);
+            }
+        }
+        expired.forEach(onExpire);
+    }
+
+    // Visit the buckets passed between the two tick counts
+    private void expire(int level, long previousTicks, long currentTicks, List<K> expired) {
+        Node<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        long steps = Math.min(currentTicks - previousTicks, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            Node<K> sentinel = buckets[(int) ((previousTicks + i) & mask)];
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.time <= currentTime) {
+                    timers.remove(node.key);
+                    expired.add(node.key);
+                } else {
+                    link(node); // cascade to a finer wheel
+                }
+                node = next;
+            }
+        }
+    }
+
+    private void link(Node<K> node) {
+        // Anything due before the next tick goes into the next tick's bucket
+        long time = Math.max(node.time, currentTime + (1L << SHIFT[0]));
+        long duration = time - currentTime;
+        for (int level = 0; level < BUCKETS.length - 1; level++) {
+            if (duration < (1L << SHIFT[level + 1])) {
+                long ticks = time >>> SHIFT[level];
+                wheel[level][(int) (ticks & (BUCKETS[level] - 1))].append(node);
+                return;
+            }
+        }
+        wheel[BUCKETS.length - 1][0].append(node);
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private long time;
+        private Node<K> prev;
+        private Node<K> next;
+
+        private Node(K key) {
+            this.key = key;
+        }
+
+        private static <K> Node<K> sentinel() {
+            Node<K> sentinel = new Node<>(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        // Append to the list whose sentinel this is
+        private void append(Node<K> node) {
+            node.prev = prev;
+            node.next = this;
+            prev.next = node;
+            prev = node;
+        }
+
+        private void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.music.musicapp.util;
+
+/**
+ * Token bucket measured in bytes, refilled continuously from System.nanoTime.
+ *
+ * {@link #take(long)} never blocks: it always debits the bucket (which may go
+ * into debt) and returns how long the caller must wait before sending. Because
+ * later callers inherit the debt, concurrent takers are served roughly in
+ * arrival order, and the sleep happens outside the lock.
+ */
+public class TokenBucket {
+
+    private final double bytesPerNano;
+    private final long capacity;
+    private double tokens;
+    private long lastRefill;
+
+    // Starts full, so the first capacity bytes go out at once (the burst allowance)
+    public TokenBucket(long bytesPerSecond, long capacity) {
+        this.bytesPerNano = bytesPerSecond / 1_000_000_000.0;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Debit count bytes; returns the nanoseconds to wait before they may be sent
+    public synchronized long take(long count) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerNano);
+        lastRefill = now;
+
+        tokens -= count;
+        return tokens >= 0 ? 0 : (long) (-tokens / bytesPerNano);
+    }
+}
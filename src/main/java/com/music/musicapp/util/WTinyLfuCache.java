@@ -0,0 +1,348 @@
+package com.music.musicapp.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Weight-bounded cache with W-TinyLFU admission and eviction.
+ *
+ * New entries land in a small LRU window (1% of the weight budget). What falls
+ * out of the window competes for a place in the main region against the main
+ * region's LRU victim, and only gets in if a {@link FrequencySketch} says it
+ * has been requested more often, so a burst of one-off keys cannot flush the
+ * entries that are actually reused. The main region is a segmented LRU: a
+ * re-read entry moves from probation to protected (80% of main). Every
+ * operation is O(1) on intrusive linked lists under one lock.
+ */
+public class WTinyLfuCache<K, V> {
+
+    // Candidates this popular occasionally win a tie, which defeats hash-flooding of the sketch
+    private static final int ADMIT_HASHDOS_THRESHOLD = 6;
+
+    private enum Queue { WINDOW, PROBATION, PROTECTED }
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final LinkedDeque<K, V> window = new LinkedDeque<>();
+    private final LinkedDeque<K, V> probation = new LinkedDeque<>();
+    private final LinkedDeque<K, V> protectedQueue = new LinkedDeque<>();
+    private final FrequencySketch sketch;
+    private BiConsumer<K, V> evictionListener = (key, value) -> { };
+
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    // expectedEntries sizes the frequency sketch; a rough upper bound is enough
+    public WTinyLfuCache(long maximumWeight, int expectedEntries) {
+        this.maximumWeight = Math.max(1, maximumWeight);
+        this.windowMaximum = Math.max(1, this.maximumWeight / 100);
+        this.protectedMaximum = (this.maximumWeight - windowMaximum) * 80 / 100;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    // Told about entries dropped for space (not explicit removals); runs under the cache lock
+    public synchronized void setEvictionListener(BiConsumer<K, V> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    // Value without counting an access (for maintenance passes)
+    public synchronized V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    public synchronized void put(K key, V value, long weight) {
+        if (weight > maximumWeight) {
+            // Could never fit; drop any older value rather than serve it stale
+            removeNode(data.get(key));
+            rejections++;
+            return;
+        }
+        weight = Math.max(1, weight);
+        sketch.increment(key);
+
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            long delta = weight - node.weight;
+            node.value = value;
+            node.weight = weight;
+            totalWeight += delta;
+            if (node.queue == Queue.WINDOW) {
+                windowWeight += delta;
+            } else if (node.queue == Queue.PROTECTED) {
+                protectedWeight += delta;
+            }
+            onAccess(node);
+        } else {
+            node = new Node<>(key, value, weight);
+            data.put(key, node);
+            window.addLast(node);
+            windowWeight += weight;
+            totalWeight += weight;
+        }
+        evict();
+    }
+
+    public synchronized V remove(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) return null;
+        removeNode(node);
+        return node.value;
+    }
+
+    // Remove the key only while it still maps to this exact value
+    public synchronized boolean remove(K key, V expected) {
+        Node<K, V> node = data.get(key);
+        if (node == null || node.value != expected) return false;
+        removeNode(node);
+        return true;
+    }
+
+    // Remove every entry matching the predicate; returns how many were removed
+    public synchronized int removeIf(BiPredicate<K, V> predicate) {
+        List<Node<K, V>> matches = new ArrayList<>();
+        for (Node<K, V> node : data.values()) {
+            if (predicate.test(node.key, node.value)) {
+                matches.add(node);
+            }
+        }
+        matches.forEach(this::removeNode);
+        return matches.size();
+    }
+
+    public synchronized void clear() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+        windowWeight = 0;
+        protectedWeight = 0;
+        totalWeight = 0;
+        sketch.clear();
+    }
+
+    public synchronized List<K> keys() {
+        return new ArrayList<>(data.keySet());
+    }
+
+    public synchronized List<V> values() {
+        List<V> values = new ArrayList<>(data.size());
+        for (Node<K, V> node : data.values()) {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    public synchronized long weightedSize() {
+        return totalWeight;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long requests = hits + misses;
+        stats.put("entries", data.size());
+        stats.put("weightedSize", totalWeight);
+        stats.put("maximumWeight", maximumWeight);
+        stats.put("windowWeight", windowWeight);
+        stats.put("protectedWeight", protectedWeight);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+        stats.put("evictions", evictions);
+        stats.put("rejections", rejections);
+        return stats;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROBATION -> {
+                // Second hit in main: promote, demoting protected's LRU entries if it overflows
+                probation.remove(node);
+                node.queue = Queue.PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum && protectedQueue.first() != node) {
+                    Node<K, V> demoted = protectedQueue.pollFirst();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = Queue.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> protectedQueue.moveToBack(node);
+        }
+    }
+
+    private void evict() {
+        // Window overflow becomes a candidate for the main region
+        while (windowWeight > windowMaximum) {
+            Node<K, V> candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+            candidate.queue = Queue.PROBATION;
+            probation.addLast(candidate);
+
+            while (totalWeight > maximumWeight) {
+                Node<K, V> victim = probation.first();
+                if (victim == candidate) {
+                    victim = protectedQueue.first();
+                }
+                if (victim == null) {
+                    evictNode(candidate);
+                    evictions++;
+                    break;
+                }
+                if (admit(candidate, victim)) {
+                    evictNode(victim);
+                    evictions++;
+                } else {
+                    evictNode(candidate);
+                    rejections++;
+                    break;
+                }
+            }
+        }
+
+        // Weight growth of an existing entry can still leave the cache over budget
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.first();
+            if (victim == null) victim = protectedQueue.first();
+            if (victim == null) victim = window.first();
+            if (victim == null) break;
+            evictNode(victim);
+            evictions++;
+        }
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        int victimFrequency = sketch.frequency(victim.key);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        return candidateFrequency >= ADMIT_HASHDOS_THRESHOLD
+            && (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evictNode(Node<K, V> node) {
+        removeNode(node);
+        evictionListener.accept(node.key, node.value);
+    }
+
+    private void removeNode(Node<K, V> node) {
+        if (node == null) return;
+        data.remove(node.key);
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+            }
+        }
+        totalWeight -= node.weight;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private long weight;
+        private Queue queue = Queue.WINDOW;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // Intrusive doubly linked list, least recently used first
+    private static final class LinkedDeque<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        private Node<K, V> first() {
+            return head;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        private Node<K, V> pollFirst() {
+            Node<K, V> node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        private void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.music.musicapp.service;
+
+import com.music.musicapp.model.Song;
+import com.music.musicapp.repository.SongRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AudioMetadataServiceTest {
+
+    private static final String BLOB_NAME = "ab".repeat(32);
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private MediaJobQueue mediaJobQueue;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Captor
+    private ArgumentCaptor<List<Song>> saved;
+
+    @InjectMocks
+    private AudioMetadataService audioMetadataService;
+
+    @Test
+    void extractsHeaderOfBlobStoredWithoutExtension() throws IOException {
+        // Blobs are stored by bare hash; only the blob metadata knows the format
+        Path blob = dir.resolve(BLOB_NAME);
+        Files.write(blob, wav(8000, 2));
+        when(fileStorageService.getSongAudioPath(BLOB_NAME)).thenReturn(blob);
+        when(fileStorageService.formatOf(BLOB_NAME)).thenReturn("wav");
+        when(mediaJobQueue.submit(anyString(), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return true;
+        });
+
+        Song song = new Song();
+        song.setId(7L);
+        song.setFilePath(BLOB_NAME);
+        when(songRepository.findAllById(any())).thenReturn(List.of(song));
+
+        audioMetadataService.extractInBackground(7L, BLOB_NAME);
+        audioMetadataService.flushPendingUpdates();
+
+        verify(songRepository).saveAll(saved.capture());
+        Song updated = saved.getValue().get(0);
+        assertEquals("wav", updated.getFileFormat());
+        assertEquals(Files.size(blob), updated.getFileSize());
+        assertEquals(2, updated.getDuration());
+        assertTrue(updated.getBitrate() > 0);
+        assertEquals(1L, audioMetadataService.getStats().get("extracted"));
+    }
+
+    // 16-bit mono PCM silence
+    private static byte[] wav(int sampleRate, int seconds) {
+        int dataSize = sampleRate * 2 * seconds;
+        ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + dataSize).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16)
+            .putShort((short) 1)          // PCM
+            .putShort((short) 1)          // mono
+            .putInt(sampleRate)
+            .putInt(sampleRate * 2)       // byte rate
+            .putShort((short) 2)          // block align
+            .putShort((short) 16);        // bits per sample
+        wav.put("data".getBytes()).putInt(dataSize);
+        return wav.array();
+    }
+}
@@ -0,0 +1,74 @@
+package com.music.musicapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactRecordCodecTest {
+
+    @Test
+    void roundTripsEverySupportedType() {
+        Map<String, Object> track = new HashMap<>();
+        track.put("id", "track-1");
+        track.put("title", "Ünïcode title ♪");
+        track.put("explicit", true);
+        track.put("streamable", false);
+        track.put("duration", 215);
+        track.put("negative", -42);
+        track.put("plays", 9_876_543_210L);
+        track.put("minLong", Long.MIN_VALUE);
+        track.put("rating", 4.5f);
+        track.put("score", 0.123456789);
+        track.put("missing", null);
+        track.put("description", "x".repeat(500));
+        track.put("genres", List.of("house", "techno"));
+        track.put("album", Map.of("name", "Discovery", "year", 2001));
+
+        List<Map<String, Object>> records = List.of(track, Map.of("id", "track-2"));
+        assertEquals(records, CompactRecordCodec.decode(CompactRecordCodec.encode(records)));
+    }
+
+    @Test
+    void roundTripsAnEmptyList() {
+        assertEquals(List.of(), CompactRecordCodec.decode(CompactRecordCodec.encode(List.of())));
+    }
+
+    @Test
+    void repeatedStringsAreStoredOnceAndDecodeToOneInstance() {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(Map.of("artist", "Daft Punk", "source", "itunes", "rank", i));
+        }
+        byte[] encoded = CompactRecordCodec.encode(records);
+        assertTrue(encoded.length < 100 * 12);
+
+        List<Map<String, Object>> decoded = CompactRecordCodec.decode(encoded);
+        assertEquals(records, decoded);
+        assertSame(decoded.get(0).get("artist"), decoded.get(99).get("artist"));
+    }
+
+    @Test
+    void rejectsUnsupportedValues() {
+        List<Map<String, Object>> records = List.of(Map.of("when", new Date()));
+        assertThrows(IllegalArgumentException.class, () -> CompactRecordCodec.encode(records));
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignPayloads() {
+        byte[] encoded = CompactRecordCodec.encode(List.of(Map.of("id", "track-1", "duration", 215)));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+
+        assertThrows(IllegalArgumentException.class, () -> CompactRecordCodec.decode(truncated));
+        assertThrows(IllegalArgumentException.class, () -> CompactRecordCodec.decode(new byte[] {1, 2, 3}));
+    }
+}
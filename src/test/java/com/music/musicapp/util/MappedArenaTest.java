@@ -0,0 +1,152 @@
+package com.music.musicapp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedArenaTest {
+
+    private static final long CAPACITY = 1024 * 1024; // the smallest the arena allows
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetReplaceAndRemove() throws IOException {
+        try (MappedArena arena = new MappedArena(dir.resolve("arena.bin"), CAPACITY)) {
+            assertTrue(arena.put("a", bytes("one")));
+            assertTrue(arena.put("b", bytes("two")));
+            assertTrue(arena.put("a", bytes("three")));
+            arena.remove("b");
+
+            assertArrayEquals(bytes("three"), arena.get("a").value());
+            assertNull(arena.get("b"));
+            assertFalse(arena.contains("b"));
+            assertNull(arena.get("never-written"));
+        }
+    }
+
+    @Test
+    void countsHitsSinceTheLastWrite() throws IOException {
+        try (MappedArena arena = new MappedArena(dir.resolve("arena.bin"), CAPACITY)) {
+            arena.put("a", bytes("one"));
+            assertEquals(1, arena.get("a").hits());
+            assertEquals(2, arena.get("a").hits());
+            arena.put("a", bytes("two"));
+            assertEquals(1, arena.get("a").hits());
+        }
+    }
+
+    @Test
+    void rejectsValuesLargerThanAQuarterOfTheRing() throws IOException {
+        try (MappedArena arena = new MappedArena(dir.resolve("arena.bin"), CAPACITY)) {
+            assertFalse(arena.put("huge", new byte[(int) (CAPACITY / 4)]));
+            assertFalse(arena.contains("huge"));
+        }
+    }
+
+    @Test
+    void wrappingOverwritesTheOldestRecords() throws IOException {
+        try (MappedArena arena = new MappedArena(dir.resolve("arena.bin"), CAPACITY)) {
+            for (int i = 0; i < 300; i++) {
+                assertTrue(arena.put("key-" + i, value(i, 10 * 1024)));
+            }
+
+            assertNull(arena.get("key-0"));
+            assertNull(arena.get("key-150"));
+            for (int i = 250; i < 300; i++) {
+                assertArrayEquals(value(i, 10 * 1024), arena.get("key-" + i).value());
+            }
+        }
+    }
+
+    @Test
+    void contentsSurviveARestartAfterWrapping() throws IOException {
+        Path file = dir.resolve("arena.bin");
+        try (MappedArena arena = new MappedArena(file, CAPACITY)) {
+            for (int i = 0; i < 300; i++) {
+                arena.put("key-" + i, value(i, 10 * 1024));
+            }
+            arena.remove("key-299");
+        }
+
+        try (MappedArena arena = new MappedArena(file, CAPACITY)) {
+            assertNull(arena.get("key-0"));
+            assertNull(arena.get("key-299"));
+            assertArrayEquals(value(298, 10 * 1024), arena.get("key-298").value());
+
+            // Appends continue from the persisted head without clobbering live records
+            assertTrue(arena.put("after-restart", bytes("new")));
+            assertArrayEquals(bytes("new"), arena.get("after-restart").value());
+            assertArrayEquals(value(298, 10 * 1024), arena.get("key-298").value());
+        }
+    }
+
+    @Test
+    void aDifferentCapacityStartsEmpty() throws IOException {
+        Path file = dir.resolve("arena.bin");
+        try (MappedArena arena = new MappedArena(file, CAPACITY)) {
+            arena.put("a", bytes("one"));
+        }
+
+        try (MappedArena arena = new MappedArena(file, CAPACITY * 2)) {
+            assertNull(arena.get("a"));
+        }
+    }
+
+    @Test
+    void tornRecordReadsAsAbsent() throws IOException {
+        Path file = dir.resolve("arena.bin");
+        long dataStart;
+        try (MappedArena arena = new MappedArena(file, CAPACITY)) {
+            arena.put("a", bytes("one"));
+            dataStart = arena.fileSize() - CAPACITY;
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(dataStart + 12 + 1); // the value byte after the one-byte key
+            raw.write('X');
+        }
+
+        try (MappedArena arena = new MappedArena(file, CAPACITY)) {
+            assertNull(arena.get("a"));
+            assertTrue(arena.put("a", bytes("two")));
+            assertArrayEquals(bytes("two"), arena.get("a").value());
+        }
+    }
+
+    @Test
+    void fullIndexEvictsTheOldestSmallRecords() throws IOException {
+        try (MappedArena arena = new MappedArena(dir.resolve("arena.bin"), CAPACITY)) {
+            // Far more tiny records than index slots, without ever wrapping the ring
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(arena.put("k" + i, bytes("v" + i)));
+            }
+
+            assertNull(arena.get("k0"));
+            assertNotNull(arena.get("k9999"));
+            assertTrue((long) arena.getStats().get("indexRebuilds") > 0);
+        }
+    }
+
+    private static byte[] value(int seed, int length) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) seed);
+        return value;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+package com.music.musicapp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogTest {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024; // the smallest the log allows
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetAndDeleteSurviveReopen() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            log.put("a", bytes("one"));
+            log.put("b", bytes("two"));
+            log.put("a", bytes("three"));
+            log.put("c", bytes("four"));
+            log.delete("c");
+
+            assertArrayEquals(bytes("three"), log.get("a"));
+            assertArrayEquals(bytes("two"), log.get("b"));
+            assertNull(log.get("c"));
+        }
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertEquals(2, log.size());
+            assertArrayEquals(bytes("three"), log.get("a"));
+            assertArrayEquals(bytes("two"), log.get("b"));
+            assertFalse(log.contains("c"));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedOnRecovery() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            log.put("a", bytes("one"));
+            log.put("b", bytes("two"));
+        }
+        Path segment = onlySegment();
+        long goodSize = Files.size(segment);
+        // Half of a record header, as left by a crash mid-append
+        Files.write(segment, new byte[] {1, 2, 3, 4, 0, 0}, StandardOpenOption.APPEND);
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertEquals(goodSize, Files.size(segment));
+            assertArrayEquals(bytes("one"), log.get("a"));
+            assertArrayEquals(bytes("two"), log.get("b"));
+            log.put("c", bytes("three"));
+        }
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertEquals(3, log.size());
+            assertArrayEquals(bytes("three"), log.get("c"));
+        }
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheSegment() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            log.put("a", bytes("one"));
+            log.put("b", bytes("two"));
+        }
+        Path segment = onlySegment();
+        byte[] content = Files.readAllBytes(segment);
+        content[content.length - 1] ^= 0x55; // last byte of b's value
+        Files.write(segment, content);
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertArrayEquals(bytes("one"), log.get("a"));
+            assertNull(log.get("b"));
+            assertEquals(1, log.size());
+        }
+    }
+
+    @Test
+    void compactionKeepsDeletesOfKeysInOlderSegments() throws IOException {
+        byte[] large = new byte[300 * 1024];
+        Arrays.fill(large, (byte) 7);
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            // Segment 1: k and three large live values
+            log.put("k", bytes("stale"));
+            log.put("a", large);
+            log.put("b", large);
+            log.put("c", large);
+            // Segment 2: only dead records and the tombstone for k
+            log.put("d", large);
+            log.delete("k");
+            log.put("d", large);
+            log.put("d", large);
+            // Segment 3 becomes active
+            log.put("d", large);
+
+            assertEquals(1, log.compact(0.5, (key, value) -> true));
+            assertNull(log.get("k"));
+        }
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertFalse(log.contains("k"));
+            assertArrayEquals(large, log.get("a"));
+            assertArrayEquals(large, log.get("d"));
+            assertEquals(4, log.size());
+        }
+    }
+
+    @Test
+    void compactionDropsRecordsTheCallerRejects() throws IOException {
+        byte[] large = new byte[300 * 1024];
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            log.put("expired", bytes("x"));
+            log.put("a", large);
+            log.put("a", large);
+            log.put("a", large);
+            log.put("b", large); // opens segment 2
+
+            assertEquals(1, log.compact(0.5, (key, value) -> !key.equals("expired")));
+            assertFalse(log.contains("expired"));
+            assertTrue(log.contains("a"));
+        }
+
+        try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE)) {
+            assertFalse(log.contains("expired"));
+            assertEquals(2, log.size());
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
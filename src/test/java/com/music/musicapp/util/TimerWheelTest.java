@@ -0,0 +1,88 @@
+package com.music.musicapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    void firesOnceAtOrAfterTheDeadlineOnEveryLevel() {
+        // One delay per wheel: under 65 s, 70 min, 18.6 h, and the overflow bucket
+        Map<String, Long> deadlines = Map.of(
+            "seconds", START + 30 * SECOND,
+            "minutes", START + 45 * MINUTE,
+            "hours", START + 10 * HOUR,
+            "days", START + 5 * 24 * HOUR);
+        TimerWheel<String> wheel = new TimerWheel<>(START);
+        deadlines.forEach(wheel::schedule);
+
+        Map<String, List<Long>> fired = new HashMap<>();
+        for (long now = START; now <= START + 6 * 24 * HOUR; now += SECOND) {
+            long at = now;
+            wheel.advance(now, key -> fired.computeIfAbsent(key, k -> new ArrayList<>()).add(at));
+        }
+
+        assertEquals(deadlines.keySet(), fired.keySet());
+        deadlines.forEach((key, deadline) -> {
+            List<Long> times = fired.get(key);
+            assertEquals(1, times.size(), key);
+            assertTrue(times.get(0) >= deadline, key);
+            // At most a couple of the finest wheel's ticks late
+            assertTrue(times.get(0) <= deadline + 3 * SECOND, key);
+        });
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceJumpingMoreThanAFullWheel() {
+        TimerWheel<String> wheel = new TimerWheel<>(START);
+        wheel.schedule("a", START + 10 * SECOND);
+        wheel.schedule("b", START + 50 * SECOND);
+        wheel.schedule("c", START + 20 * MINUTE);
+        wheel.schedule("d", START + 2 * HOUR);
+
+        // Far more than 64 ticks of the finest wheel in one step
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START + 30 * MINUTE, fired::add);
+        assertEquals(List.of("a", "b", "c"), fired.stream().sorted().toList());
+        assertEquals(1, wheel.size());
+
+        fired.clear();
+        wheel.advance(START + 3 * HOUR, fired::add);
+        assertEquals(List.of("d"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelAndRescheduleDropTheOldTimer() {
+        TimerWheel<String> wheel = new TimerWheel<>(START);
+        wheel.schedule("cancelled", START + 5 * SECOND);
+        wheel.cancel("cancelled");
+        wheel.schedule("later", START + 5 * SECOND);
+        wheel.schedule("later", START + HOUR);
+        wheel.schedule("sooner", START + HOUR);
+        wheel.schedule("sooner", START + 5 * SECOND);
+        assertEquals(2, wheel.size());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START + 10 * SECOND, fired::add);
+        assertEquals(List.of("sooner"), fired);
+
+        fired.clear();
+        wheel.advance(START + 2 * HOUR, fired::add);
+        assertEquals(List.of("later"), fired);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.music.musicapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WTinyLfuCacheTest {
+
+    @Test
+    void weightsFollowPutUpdateRemoveAndRemoveIf() {
+        // Window holds 1% of 1000, so 10; nothing here comes near the total budget
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(1000, 100);
+        cache.put("a", "a1", 5);
+        cache.put("b", "b1", 4);
+        assertWeights(cache, 9, 9, 0);
+
+        // Window overflow moves a to probation, which counts toward neither window nor protected
+        cache.put("c", "c1", 3);
+        assertWeights(cache, 12, 7, 0);
+
+        // A hit in probation promotes to protected
+        assertEquals("a1", cache.get("a"));
+        assertWeights(cache, 12, 7, 5);
+
+        cache.put("a", "a2", 8);
+        assertWeights(cache, 15, 7, 8);
+        cache.put("b", "b2", 6);
+        assertWeights(cache, 17, 9, 8);
+
+        assertEquals("c1", cache.remove("c"));
+        assertWeights(cache, 14, 6, 8);
+
+        assertEquals(1, cache.removeIf((key, value) -> key.equals("a")));
+        assertWeights(cache, 6, 6, 0);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void frequentKeySurvivesAScanOfOneOffKeys() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(100, 1000);
+        cache.put("hot", "value", 1);
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("scan-" + i, "value", 1);
+        }
+
+        assertNotNull(cache.peek("hot"));
+        assertTrue(cache.weightedSize() <= 100);
+        assertTrue((long) cache.getStats().get("rejections") > 0);
+    }
+
+    @Test
+    void putHeavierThanTheWholeCacheIsRejected() {
+        WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(100, 100);
+        cache.put("a", "small", 10);
+
+        cache.put("a", "huge", 101);
+        cache.put("b", "huge", 101);
+
+        assertNull(cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertWeights(cache, 0, 0, 0);
+        assertEquals(2L, cache.getStats().get("rejections"));
+    }
+
+    private static void assertWeights(WTinyLfuCache<?, ?> cache, long total, long window, long protectedWeight) {
+        assertEquals(total, cache.weightedSize());
+        assertEquals(window, cache.getStats().get("windowWeight"));
+        assertEquals(protectedWeight, cache.getStats().get("protectedWeight"));
+    }
+}